@@ -0,0 +1,29 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the PGMS benchmarks, writing the results as JSON to
+ * <code>pgms-bench.json</code> so they can be compared between
+ * releases.  Any JMH command line options may be given; a result
+ * format or file given on the command line overrides just that default.
+ */
+public class Main {
+
+    public static void main(String args[]) throws Exception {
+        List<String> given = Arrays.asList(args);
+        List<String> all = new ArrayList<String>();
+        if (!given.contains("-rf")) {
+            all.add("-rf");
+            all.add("json");
+        }
+        if (!given.contains("-rff")) {
+            all.add("-rff");
+            all.add("pgms-bench.json");
+        }
+        all.addAll(given);
+        org.openjdk.jmh.Main.main(all.toArray(new String[0]));
+    }
+}
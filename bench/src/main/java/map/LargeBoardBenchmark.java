@@ -0,0 +1,51 @@
+package map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of asking a large, half played board whether the game is done.
+ * The board is 1000 by 1000 with 15% of its cells holding mines, and
+ * every safe cell in the lower half has been probed, so a scan of the
+ * board must pass half a million cells before it finds one that is
+ * still unprobed. <p>
+ * <code>done</code> is the counter based test in MineMap;
+ * <code>done_by_scan</code> is the full board scan it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LargeBoardBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int MINES = SIZE * SIZE * 15 / 100;
+
+    private MineMap m;
+
+    @Setup
+    public void setup() {
+        m = new MineMap(MINES, SIZE, SIZE, 1L);
+        for (int y = 0; y < SIZE / 2; y++)
+            for (int x = 0; x < SIZE; x++)
+                if (!m.HasMine(x, y))
+                    m.probe(x, y);
+    }
+
+    @Benchmark
+    public boolean done() {
+        return m.done();
+    }
+
+    @Benchmark
+    public boolean done_by_scan() {
+        for (int y = 0; y < m.r; y++)
+            for (int x = 0; x < m.c; x++)
+                if (m.mine_map[y][x] < 0 != m.unprobed_map[y][x])
+                    return false;
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction, look and Clone for each Map implementation on an
+ * expert board.  The board used by look and Clone has had about a
+ * third of its safe cells probed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MineMapBenchmark {
+
+    @Param({"MineMap", "BitboardMineMap"})
+    public String kind;
+
+    private long seed = 0;
+    private Map m;
+
+    @Setup
+    public void setup() {
+        m = new_map(99, 16, 30, 1L);
+        for (int y = 0; y < 16; y += 3)
+            for (int x = 0; x < 30; x++)
+                if (!m.HasMine(x, y))
+                    m.probe(x, y);
+    }
+
+    private Map new_map(int mines, int rows, int columns, long seed) {
+        if (kind.equals("BitboardMineMap"))
+            return new BitboardMineMap(mines, rows, columns, seed);
+        else
+            return new MineMap(mines, rows, columns, seed);
+    }
+
+    @Benchmark
+    public Map construct() {
+        return new_map(99, 16, 30, seed++);
+    }
+
+    @Benchmark
+    public void look(Blackhole bh) {
+        for (int y = 0; y < 16; y++)
+            for (int x = 0; x < 30; x++)
+                bh.consume(m.look(x, y));
+    }
+
+    @Benchmark
+    public Map Clone() {
+        return m.Clone();
+    }
+}
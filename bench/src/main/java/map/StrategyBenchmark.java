@@ -0,0 +1,59 @@
+package map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Plays complete games with each shipped strategy at each game level.
+ * Every invocation plays a new seeded game, so runs see the same
+ * sequence of boards.  QLearnerStrategy learns into the shared tables
+ * in PGMS as it plays, so its timings drift as the tables grow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StrategyBenchmark {
+
+    @Param({"sp.SinglePointStrategy", "eqn.EqnStrategy", "eqn.MioStrategy",
+            "vote.VoteStrategy", "sim.SimStrategy", "sim.SimStrategy2",
+            "qlearner.QLearnerStrategy"})
+    public String strategy;
+
+    @Param({"beginner", "intermediate", "expert"})
+    public String level;
+
+    private Strategy s;
+    private int mines;
+    private int rows;
+    private int columns;
+    private long seed = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        s = (Strategy) Class.forName(strategy).newInstance();
+        if (level.equals("expert")) {
+            mines = 99;
+            rows = 16;
+            columns = 30;
+        } else if (level.equals("intermediate")) {
+            mines = 40;
+            rows = 13;
+            columns = 15;
+        } else {
+            mines = 10;
+            rows = 8;
+            columns = 8;
+        }
+    }
+
+    @Benchmark
+    public boolean play() {
+        Map m = new MineMap(mines, rows, columns, seed++);
+        s.play(m);
+        return m.won();
+    }
+}
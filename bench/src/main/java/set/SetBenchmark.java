@@ -0,0 +1,81 @@
+package set;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sp.Point;
+
+/**
+ * Set operations on sets of points of the size found around a cell
+ * (8) and along a frontier (64).  The two sets overlap in half of
+ * their points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SetBenchmark {
+
+    @Param({"8", "64"})
+    public int size;
+
+    private Set s0;             // Points 0 .. size - 1
+    private Set s1;             // Points size / 2 .. size + size / 2 - 1
+    private Set half;           // A proper subset of s0
+    private Point inside;
+    private Point outside;
+
+    @Setup
+    public void setup() {
+        s0 = points(0, size);
+        s1 = points(size / 2, size + size / 2);
+        half = points(0, size / 2);
+        inside = point(size / 2);
+        outside = point(size + size / 2);
+    }
+
+    /* Points are laid out on a board 30 columns wide. */
+    private static Point point(int k) {
+        return new Point(k % 30, k / 30);
+    }
+
+    private static Set points(int from, int to) {
+        Set s = new Set();
+        for (int k = from; k < to; k++)
+            s = s.adjoin(point(k));
+        return s;
+    }
+
+    @Benchmark
+    public Set adjoin_new() {
+        return s0.adjoin(outside);
+    }
+
+    @Benchmark
+    public Set adjoin_member() {
+        return s0.adjoin(inside);
+    }
+
+    @Benchmark
+    public Set union() {
+        return s0.union(s1);
+    }
+
+    @Benchmark
+    public Set set_difference() {
+        return s0.set_difference(s1);
+    }
+
+    @Benchmark
+    public boolean proper_subset() {
+        return half.proper_subset(s0);
+    }
+
+    @Benchmark
+    public int card() {
+        return s0.card();
+    }
+}
@@ -0,0 +1,86 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import sp.Point;
+import sp.PointSet;
+
+/**
+ * Equation Difference Rule
+ * <pre>
+ * Consider two equations,
+ *     c[0] = p[0,0] + p[0,1] + ... + p[0,n[0]]
+ *     c[1] = p[1,0] + p[1,1] + ... + p[1,n[1]]
+ * Substract equation 0 from equation 1.
+ * If the number of points with a positive coefficient is the same
+ * as the difference between the constants, the points with a positive
+ * coefficient must have value one and therefore should be marked.
+ * The points with a negative coefficient must have value zero and
+ * therefore should be probed.
+ * </pre>
+ * When the rule does not apply to a pair of equations, the method
+ * otherwise is given a chance to do something else with them.
+ * @see MioDifferenceRule
+ */
+class DifferenceRule extends Rule {
+
+  DifferenceRule() {
+    this("equation difference");
+  }
+
+  DifferenceRule(String name) {
+    super(name);
+  }
+
+  final boolean apply(Propagator pr, Point p) {
+    Eqn es[] = pr.eqns_at(p);
+    boolean fired = false;
+
+    for (Eqn e0 : es)
+      for (Eqn e1 : es) {
+	int c_diff = e1.constant() - e0.constant();
+
+	if (c_diff > 0) {
+	  PointSet ps = e1.points().set_difference(e0.points());
+
+	  if (ps.card() == c_diff) {
+	    pr.mark_points(ps);
+	    pr.probe_points(e0.points().set_difference(e1.points()));
+	    fired = true;
+	  }
+	  else if (otherwise(pr, e0, e1, ps, c_diff))
+	    fired = true;
+	}
+      }
+    return fired;
+  }
+
+  /**
+   * Called for a pair of equations to which the rule does not apply.
+   * @param e0		equation 0
+   * @param e1		equation 1
+   * @param ps		the points of equation 1 not in equation 0
+   * @param c_diff	the constant of e1 minus that of e0, which is
+   *			positive but differs from the size of ps
+   * @return		true if something was done
+   */
+  boolean otherwise(Propagator pr, Eqn e0, Eqn e1, PointSet ps, int c_diff) {
+    return false;
+  }
+}
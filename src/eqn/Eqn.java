@@ -21,7 +21,7 @@ Boston, MA 02111-1307, USA.
 */
 
 import set.*;
-import sp.Point;
+import sp.PointSet;
 
 /**
  * The class Eqn implements immutable equations.
@@ -29,13 +29,13 @@ import sp.Point;
  * The coefficent of each variable in an equation is one.
  * These equations can be used as elements of sets.
  * @see set.Set
- * @see sp.Point
+ * @see sp.PointSet
  * @version October 1995
  * @author John D. Ramsdell
  */
 final class Eqn implements Element {
   private int c;		// Constant term.
-  private Set ps;		// Set of points.
+  private PointSet ps;		// Set of points.
 
   private Eqn() {
       
@@ -52,7 +52,7 @@ final class Eqn implements Element {
    * @param points          set of points
    * @return                an equation
    */
-  Eqn(int constant, Set points) {
+  Eqn(int constant, PointSet points) {
     c = constant;
     ps = points;
   }
@@ -69,7 +69,7 @@ final class Eqn implements Element {
    * Access the set of points an equation.
    * @return 		the set of points
    */
-  Set points() {
+  PointSet points() {
     return ps;
   }
 
@@ -81,7 +81,8 @@ final class Eqn implements Element {
     return e != null
       && e instanceof Eqn
 	&& c == ((Eqn)e).c
-	  && ps.same(((Eqn)e).ps);
+	  && ps.hash() == ((Eqn)e).ps.hash()
+	    && ps.same(((Eqn)e).ps);
   }
 
   /**
@@ -98,6 +99,14 @@ final class Eqn implements Element {
 	    && ps.less(((Eqn)e).ps);
   }
 
+  /**
+   * A hash of this equation.
+   * @see Element#hash
+   */
+  public int hash() {
+    return 31 * c + ps.hash();
+  }
+
   /**
    * Display the equation on the standard output stream.
    * Used only for debugging.
@@ -106,12 +115,11 @@ final class Eqn implements Element {
     System.out.print(c + " = ");
     if (ps.empty())
       System.out.print("0");
-    else {
-      ((Point)ps.first()).display();
-      for (Set ps0 = ps.but_first(); !ps0.empty(); ps0 = ps0.but_first()) {
-	System.out.print(" + ");
-	((Point)ps0.first()).display();
+    else
+      for (int k = ps.next(0); k >= 0; k = ps.next(k + 1)) {
+	if (k > ps.next(0))
+	  System.out.print(" + ");
+	ps.point(k).display();
       }
-    }
   }
 }
@@ -0,0 +1,74 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import set.*;
+import sp.PointSet;
+
+/**
+ * Equation Difference Rules, with the Mio inspired rule.
+ * <pre>
+ * Consider three equations,
+ *     c[0] = p[0,0] + p[0,1] + ... + p[0,n[0]]
+ *     c[1] = p[1,0] + p[1,1] + ... + p[1,n[1]]
+ *     c[2] = p[2,0] + p[2,1] + ... + p[2,n[1]]
+ * Substract equations 0 and 2 from equation 1.
+ * If the number of points with a positive coefficient is the same
+ * as the difference between the constants, the points with a positive
+ * coefficient must have value one and therefore should be marked.
+ * The points with a negative coefficient must have value zero and
+ * therefore should be probed.
+ * </pre>
+ * The three equation rule is tried on pairs of equations to which the
+ * two equation rule does not apply.
+ * @see DifferenceRule
+ */
+final class MioDifferenceRule extends DifferenceRule {
+
+  MioDifferenceRule() {
+    super("Mio equation difference");
+  }
+
+  boolean otherwise(Propagator pr, Eqn e0, Eqn e1, PointSet ps, int c_diff) {
+    if (c_diff <= 1)
+      return false;
+    boolean fired = false;
+    Set es2 = new Set();	// Try double elimination -- the Mio trick
+
+    for (int k = ps.next(0); k >= 0; k = ps.next(k + 1))
+      es2 = es2.union(pr.at(ps.point(k)));
+    // es2 is the equations that contain a point in ps.
+    for (; !es2.empty(); es2 = es2.but_first()) {
+      Eqn e2 = (Eqn)es2.first();
+      int c_diff2 = c_diff - e2.constant();
+      if (c_diff2 > 0) {
+	PointSet ps2 = ps.set_difference(e2.points());
+	if (ps2.card() == c_diff2) {
+	  pr.mark_points(ps2);
+	  PointSet ps3 = e0.points().union(e2.points());
+	  ps3 = ps3.set_difference(e1.points());
+	  ps3 = ps3.union(e0.points().intersect(e2.points()));
+	  pr.probe_points(ps3);
+	  fired = true;
+	}
+      }
+    }
+    return fired;
+  }
+}
@@ -0,0 +1,389 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import map.Map;
+import map.PGMS;
+import set.*;
+import sp.PointSet;
+
+/**
+ * The class Probability computes the probability that each unknown
+ * point contains a mine, given the equations of an equation map.
+ * <p>
+ * Equations that share a point belong to the same component.  The
+ * values of the points of a component are found by backtracking, and
+ * its solutions are counted by the number of mines they use.  Points
+ * that are in exactly the same equations are searched together, as
+ * only the number of mines among them matters.  A
+ * solution for every component is weighted by the number of ways the
+ * remaining mines can be placed among the unknown points that are in
+ * no equation.  A component whose equations are unchanged since the
+ * last call is not solved again.
+ * <p>
+ * The search gives up after visiting PGMS.guessNodes nodes, so that
+ * the same game is played the same way however busy the machine is,
+ * and the caller must then fall back on a cheaper estimate.  When
+ * PGMS.moveBudget is set, the search is bounded by that time instead.
+ * @see EqnStrategy
+ * @see MioStrategy
+ */
+final class Probability {
+
+  /* Solved components, by their equations.  Only the components
+   * seen by the last call are kept. */
+  private HashMap<Key, Component> memo = new HashMap<Key, Component>();
+
+  /* State of the search in solve. */
+  private int eqn_const[];	// eqn_const[e] is what eqn e still needs
+  private int eqn_open[];	// and eqn_open[e] its unassigned points.
+  private int group_eqns[][];	// group_eqns[g] lists the eqns of group g
+  private int group_size[];	// Points in each group
+  private int group_mines[];	// Mines placed in each group
+  private double count[];	// count[j] is solutions with j mines
+  private double mines[][];	// mines[g][j] is the number of mines at
+				// each point of group g, over those
+  private long nodes;		// Nodes visited over all calls
+  private long node_limit;	// Give up when nodes reaches this,
+  private long deadline;	// or at this time if PGMS.moveBudget is set
+  private boolean timed_out;
+
+  /**
+   * Compute mine probabilities.
+   * @param m		the mine map
+   * @param em		em[y][x] is the set of equations using (x, y)
+   * @return		an array whose element <code>y * columns + x</code>
+   *			is the probability that (x, y) contains a mine,
+   *			or null if the search gave up.  Points that are not
+   *			unknown have probability one.
+   */
+  double[] compute(Map m, Set em[][]) {
+    if (PGMS.moveBudget > 0) {
+      node_limit = Long.MAX_VALUE;
+      deadline = System.nanoTime() + PGMS.moveBudget;
+    } else
+      node_limit = nodes + PGMS.guessNodes;
+    timed_out = false;
+    int r = m.rows();
+    int c = m.columns();
+    int n = r * c;
+
+    /* Find each equation once, at its first point, and join the
+     * points of each equation. */
+    int parent[] = new int[n];
+    ArrayList<Eqn> eqns = new ArrayList<Eqn>();
+    int unknown = 0;
+    for (int k = 0; k < n; k++) {
+      parent[k] = k;
+      if (Map.UNPROBED == m.look(k % c, k / c)) {
+	unknown++;
+	for (Set es = em[k / c][k % c]; !es.empty(); es = es.but_first()) {
+	  Eqn e = (Eqn)es.first();
+	  if (e.points().next(0) == k)
+	    eqns.add(e);
+	}
+      }
+    }
+    for (Eqn e : eqns) {
+      PointSet ps = e.points();
+      int f = ps.next(0);
+      for (int k = ps.next(f + 1); k >= 0; k = ps.next(k + 1))
+	parent[find(parent, k)] = find(parent, f);
+    }
+
+    /* Collect the equations of each component. */
+    int comp_of[] = new int[n];
+    ArrayList<Set> comps = new ArrayList<Set>();
+    for (Eqn e : eqns) {
+      int root = find(parent, e.points().next(0));
+      if (comp_of[root] == 0) {
+	comps.add(new Set());
+	comp_of[root] = comps.size();
+      }
+      int i = comp_of[root] - 1;
+      comps.set(i, comps.get(i).adjoin(e));
+    }
+
+    /* Solve each component, or find it solved. */
+    HashMap<Key, Component> seen = new HashMap<Key, Component>();
+    Component cs[] = new Component[comps.size()];
+    int frontier = 0;
+    for (int i = 0; i < cs.length; i++) {
+      Key key = new Key(comps.get(i));
+      Component comp = memo.get(key);
+      if (comp == null) {
+	comp = solve(m, em, comps.get(i));
+	if (comp == null) {	// Gave up
+	  memo.putAll(seen);
+	  return null;
+	}
+      }
+      seen.put(key, comp);
+      cs[i] = comp;
+      frontier += comp.points.length;
+    }
+    memo = seen;
+
+    /* prefix[i] counts the solutions of components 0 .. i - 1,
+     * and suffix[i] those of components i .. cs.length - 1,
+     * by number of mines. */
+    double prefix[][] = new double[cs.length + 1][];
+    double suffix[][] = new double[cs.length + 1][];
+    prefix[0] = suffix[cs.length] = new double[] { 1 };
+    for (int i = 0; i < cs.length; i++)
+      prefix[i + 1] = convolve(prefix[i], cs[i].count);
+    for (int i = cs.length - 1; i >= 0; i--)
+      suffix[i] = convolve(cs[i].count, suffix[i + 1]);
+    double total[] = prefix[cs.length];
+
+    /* weight[s] is proportional to the number of ways of placing the
+     * mines not in the frontier when the frontier holds s mines. */
+    int interior = unknown - frontier;
+    int mmm = m.mines_minus_marks();
+    double log_fact[] = new double[interior + 1];
+    for (int i = 1; i <= interior; i++)
+      log_fact[i] = log_fact[i - 1] + Math.log(i);
+    double log_weight[] = new double[total.length];
+    double log_max = Double.NEGATIVE_INFINITY;
+    for (int s = 0; s < total.length; s++) {
+      int rest = mmm - s;
+      if (rest < 0 || rest > interior)
+	log_weight[s] = Double.NEGATIVE_INFINITY;
+      else
+	log_weight[s] = log_fact[interior] - log_fact[rest]
+	  - log_fact[interior - rest];
+      log_max = Math.max(log_max, log_weight[s]);
+    }
+    double weight[] = new double[total.length];
+    double z = 0;
+    double interior_mines = 0;
+    for (int s = 0; s < total.length; s++) {
+      weight[s] = Math.exp(log_weight[s] - log_max);
+      z += total[s] * weight[s];
+      interior_mines += total[s] * weight[s] * (mmm - s);
+    }
+    if (!(z > 0))		// No solutions--the equations are wrong
+      return null;
+
+    double prob[] = new double[n];
+    double p_interior = interior > 0 ? interior_mines / (z * interior) : 1;
+    for (int k = 0; k < n; k++)
+      prob[k] = Map.UNPROBED == m.look(k % c, k / c) ? p_interior : 1;
+
+    for (int i = 0; i < cs.length; i++) {
+      Component comp = cs[i];
+      double rest[] = convolve(prefix[i], suffix[i + 1]);
+      /* w[j] weighs the solutions of this component with j mines. */
+      double w[] = new double[comp.count.length];
+      for (int j = 0; j < w.length; j++)
+	for (int t = 0; t < rest.length; t++)
+	  w[j] += rest[t] * weight[j + t];
+      for (int a = 0; a < comp.points.length; a++) {
+	double p = 0;
+	for (int j = 0; j < w.length; j++)
+	  p += comp.mines[a][j] * w[j];
+	prob[comp.points[a]] = p / z;
+      }
+    }
+    return prob;
+  }
+
+  private static int find(int parent[], int k) {
+    while (parent[k] != k)
+      k = parent[k] = parent[parent[k]];
+    return k;
+  }
+
+  private static double[] convolve(double a[], double b[]) {
+    double ab[] = new double[a.length + b.length - 1];
+    for (int i = 0; i < a.length; i++)
+      if (a[i] != 0)
+	for (int j = 0; j < b.length; j++)
+	  ab[i + j] += a[i] * b[j];
+    return ab;
+  }
+
+  /* Count the solutions of the equations in es, or return null
+   * if the search gives up. */
+  private Component solve(Map m, Set em[][], Set es) {
+    int c = m.columns();
+
+    /* Number the points so that each point shares an equation with
+     * an earlier one, which lets the search fail early. */
+    PointSet all = new PointSet(c);
+    for (Set s = es; !s.empty(); s = s.but_first())
+      all = all.union(((Eqn)s.first()).points());
+    int n = all.card();
+    int points[] = new int[n];
+    HashMap<Integer, Integer> local = new HashMap<Integer, Integer>();
+    points[0] = all.next(0);
+    local.put(points[0], 0);
+    for (int i = 0, added = 1; i < added; i++) {
+      int k = points[i];
+      for (Set s = em[k / c][k % c]; !s.empty(); s = s.but_first()) {
+	PointSet ps = ((Eqn)s.first()).points();
+	for (int k0 = ps.next(0); k0 >= 0; k0 = ps.next(k0 + 1))
+	  if (all.member(k0 % c, k0 / c) && !local.containsKey(k0)) {
+	    local.put(k0, added);
+	    points[added++] = k0;
+	  }
+      }
+    }
+
+    /* List the equations of each point. */
+    int ne = es.card();
+    int eqns_of[][] = new int[n][];
+    int size[] = new int[n];
+    for (Set s = es; !s.empty(); s = s.but_first()) {
+      PointSet ps = ((Eqn)s.first()).points();
+      for (int k = ps.next(0); k >= 0; k = ps.next(k + 1))
+	size[local.get(k)]++;
+    }
+    for (int i = 0; i < n; i++)
+      eqns_of[i] = new int[size[i]];
+    int e = 0;
+    for (Set s = es; !s.empty(); s = s.but_first(), e++) {
+      PointSet ps = ((Eqn)s.first()).points();
+      for (int k = ps.next(0); k >= 0; k = ps.next(k + 1)) {
+	int i = local.get(k);
+	eqns_of[i][--size[i]] = e;
+      }
+    }
+
+    /* Points in exactly the same equations form a group.  Only the
+     * number of mines in a group matters to the equations, so the
+     * search assigns a number to each group rather than a value to
+     * each point. */
+    HashMap<String, Integer> groups = new HashMap<String, Integer>();
+    int group_of[] = new int[n];
+    int ng = 0;
+    group_eqns = new int[n][];
+    for (int i = 0; i < n; i++) {
+      String sig = Arrays.toString(eqns_of[i]);
+      Integer g = groups.get(sig);
+      if (g == null) {
+	g = ng++;
+	groups.put(sig, g);
+	group_eqns[g] = eqns_of[i];
+      }
+      group_of[i] = g;
+      size[g]++;
+    }
+
+    eqn_const = new int[ne];
+    eqn_open = new int[ne];
+    e = 0;
+    for (Set s = es; !s.empty(); s = s.but_first(), e++) {
+      Eqn eqn = (Eqn)s.first();
+      eqn_const[e] = eqn.constant();
+      eqn_open[e] = eqn.points().card();
+    }
+    group_size = Arrays.copyOf(size, ng);
+    group_mines = new int[ng];
+    count = new double[n + 1];
+    mines = new double[ng][n + 1];
+    search(0, 0, 1);
+    if (timed_out)
+      return null;
+
+    double point_mines[][] = new double[n][];
+    for (int i = 0; i < n; i++)
+      point_mines[i] = mines[group_of[i]];
+    return new Component(points, count, point_mines);
+  }
+
+  /* Assign numbers of mines to groups g and above, given that the
+   * groups below g hold j mines in w ways. */
+  private void search(int g, int j, double w) {
+    if (++nodes >= node_limit
+	|| node_limit == Long.MAX_VALUE && (nodes & 255) == 0
+	   && System.nanoTime() > deadline)
+      timed_out = true;
+    if (timed_out)
+      return;
+    if (g == group_size.length) {
+      count[j] += w;
+      for (int a = 0; a < g; a++)
+	mines[a][j] += w * group_mines[a] / group_size[a];
+      return;
+    }
+    double ways = 1;		// Ways of placing v mines in the group
+    for (int v = 0; v <= group_size[g]; v++) {
+      if (assign(g, v))
+	search(g + 1, j + v, w * ways);
+      unassign(g, v);
+      ways = ways * (group_size[g] - v) / (v + 1);
+    }
+  }
+
+  /* Place v mines in group g.  Returns false when some equation can
+   * no longer be satisfied. */
+  private boolean assign(int g, int v) {
+    boolean ok = true;
+    group_mines[g] = v;
+    for (int e : group_eqns[g]) {
+      eqn_const[e] -= v;
+      eqn_open[e] -= group_size[g];
+      if (eqn_const[e] < 0 || eqn_const[e] > eqn_open[e])
+	ok = false;
+    }
+    return ok;
+  }
+
+  private void unassign(int g, int v) {
+    group_mines[g] = 0;
+    for (int e : group_eqns[g]) {
+      eqn_const[e] += v;
+      eqn_open[e] += group_size[g];
+    }
+  }
+
+  /* The solutions of a component. */
+  private static final class Component {
+    final int points[];		// Point y * columns + x of each point
+    final double count[];	// count[j] is solutions with j mines
+    final double mines[][];	// mines[a][j] have a mine at point a
+
+    Component(int points[], double count[], double mines[][]) {
+      this.points = points;
+      this.count = count;
+      this.mines = mines;
+    }
+  }
+
+  /* A set of equations as a hash table key. */
+  private static final class Key {
+    private final Set es;
+
+    Key(Set es) {
+      this.es = es;
+    }
+
+    public int hashCode() {
+      return es.hash();
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof Key && es.same(((Key)o).es);
+    }
+  }
+}
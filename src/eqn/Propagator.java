@@ -0,0 +1,452 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import map.*;
+import set.*;
+import sp.Point;
+import sp.PointSet;
+
+/**
+ * The class Propagator plays a game with equations, as described in
+ * EqnStrategy, using a list of rules.
+ * <p>
+ * Points whose equations have changed wait in a worklist.  Each point
+ * taken from the worklist is given to every rule in turn, and the
+ * rules probe points, mark points and add equations, which puts more
+ * points on the worklist.  When the worklist is empty, the propagator
+ * guesses.
+ * @see EqnStrategy
+ * @see MioStrategy
+ * @see Rule
+ */
+final class Propagator {
+
+  /* Mine map to which this strategy is applied. */
+  private Map m;
+
+  /* em[y][x] contains equation e if point (x, y) is in the equation. */
+  private Set em[][];               // em is short for an equation map
+
+  /* ps contains the points that are candidates for the rules. */
+  private Worklist ps;
+
+  /* The rules, in the order they are applied. */
+  private final Rule rules[];
+
+  /* The subset rule, which is also applied to each point probed or
+   * marked, and counted there too. */
+  private final Rule subset_rule;
+
+  /* When the number of unknown locations falls to this limit,
+   * a global equation is added. */
+  private final int global_eqn_limit = 8;
+  private boolean global_eqn_added; // Has global equation been added?
+
+  /* Mine probabilities for choose. */
+  private final Probability probability = new Probability();
+
+  private final boolean messages = false; // Print debugging messages
+
+  /**
+   * Construct a propagator.
+   * @param rules	the rules, in the order they are applied
+   */
+  Propagator(Rule... rules) {
+    this.rules = rules;
+    Rule subset = new SubsetRule();
+    for (Rule rule : rules)
+      if (rule instanceof SubsetRule)
+	subset = rule;
+    subset_rule = subset;
+  }
+
+  /**
+   * Say how many times each rule has fired, over all games played
+   * with these rules.
+   */
+  String stats() {
+    StringBuilder sb = new StringBuilder("Rules fired:");
+    for (int i = 0; i < rules.length; i++)
+      sb.append(i == 0 ? " " : ", ").append(rules[i].name())
+	.append(' ').append(rules[i].fired());
+    return sb.append('.').toString();
+  }
+
+  /**
+   * Play a game.
+   * @see Strategy#play
+   */
+  void play(Map m) {
+    this.m = m;
+    int c = m.columns();
+    global_eqn_added = false;
+    ps = new Worklist(m.rows() * c);
+    init_eqn_map();		// Create initial em array
+
+    while (!m.done()) {
+      if (Map.BOOM == choose())	// Guess a location and probe it
+	return;			// Choose adds to the worklist ps
+      for (int k = ps.remove(); k >= 0; k = ps.remove()) {
+	Point p = new Point(k % c, k / c);
+
+	/* Try applying the rules to point p.
+	 * The rules add to the worklist ps. */
+	for (Rule rule : rules)
+	  rule.run(this, p);
+
+	/* Add global equation if appropriate. */
+	if (!global_eqn_added) {
+	  int nps0 = m.unprobedCells();
+	  if (nps0 <= global_eqn_limit) {
+	    global_eqn_added = true;
+	    PointSet ps0 = unknown_points();
+	    ps.add(ps0);
+	    /* The number of mines minus the number of marks
+	     * equals the sum of the values at the unknown points. */
+	    adjoin(new Eqn(m.mines_minus_marks(), ps0));
+	  }
+	}
+      }
+    }
+    if (messages) {
+      if (m.won())
+	System.out.println("Game won.");
+      else
+	System.out.println("Game lost.");
+    }
+    em = null;
+  }
+
+  private PointSet unknown_points() { // This routine returns the
+    int r = m.rows();		 // set of points which have
+    int c = m.columns();	 // values that are not known.
+    PointSet ps = new PointSet(c);
+
+    for (int y = r - 1; y >= 0; y--)
+      for (int x = c - 1; x >= 0; x--)
+        if (Map.UNPROBED == m.look(x, y))
+	  ps = ps.adjoin(x, y);
+    return ps;
+  }
+
+  /* Operations for rules. */
+
+  /**
+   * The subset rule at point p, as described in SubsetRule.
+   * @return		true if an equation was added
+   */
+  boolean subset(Point p) {
+    Eqn es[] = eqns_at(p);
+    boolean added = false;
+
+    for (Eqn e0 : es)
+      for (Eqn e1 : es) {
+	int c_diff = e1.constant() - e0.constant();
+	PointSet ps0 = e0.points();
+	PointSet ps1 = e1.points();
+
+	if (c_diff >= 0 && ps0.card() < ps1.card() && ps0.subset(ps1)) {
+	  PointSet ps2 = ps1.set_difference(ps0);
+	  Eqn e = new Eqn(c_diff, ps2);
+
+	  if (!member(e)) {
+	    adjoin(e);
+	    ps.add(ps2);
+	    added = true;
+	  }
+	}
+      }
+    return added;
+  }
+
+  /**
+   * Probe points.
+   * @param ps0		a set of points known not to contain mines
+   */
+  void probe_points(PointSet ps0) {
+    for (int k = ps0.next(0); k >= 0; k = ps0.next(k + 1)) {
+      Point p = ps0.point(k);
+      int q = m.probe(p.x(), p.y()); // assert(q >= 0)
+      if (messages && q < 0)
+	System.out.println("Probe kills");
+
+      /* Propagate assertion that point p does not contain a mine
+       * by adjoining the equation 0 = p, and applying the subset rule. */
+      adjoin(new Eqn(0, new PointSet(m.columns()).adjoin(p)));
+      subset_rule.run(this, p);
+      remove_at(p);		// Dump equations at p
+
+      /* Add an equation using the information found by the probe. */
+      PointSet ps1 = unknowns_near(p.x(), p.y());
+      adjoin(new Eqn(q - marks_near(p.x(), p.y()), ps1));
+      ps.add(ps1);
+    }
+  }
+
+  /**
+   * Mark points.
+   * @param ps0		a set of points known to contain mines
+   */
+  void mark_points(PointSet ps0) {
+    for (int k = ps0.next(0); k >= 0; k = ps0.next(k + 1)) {
+      Point p = ps0.point(k);
+      int q = m.mark(p.x(), p.y()); // assert(q == Map.MARKED)
+      if (messages && q != Map.MARKED)
+	System.out.println("Mark misses");
+
+      /* Propagate assertion that point p contains a mine
+       * by adjoin the equation 1 = p, and applying the subset rule. */
+      adjoin(new Eqn(1, new PointSet(m.columns()).adjoin(p)));
+      subset_rule.run(this, p);
+      remove_at(p);		// Dump equations at p
+    }
+  }
+
+  /* Remove all equations that contain point p. */
+  private void remove_at(Point p) {
+    for (Set es = at(p); !es.empty(); es = es.but_first()) {
+      Eqn e = (Eqn)es.first();
+      remove(e);
+    }
+  }
+
+  private void init_eqn_map() {	// Initialize the equation map em
+    Set mt = new Set();
+    int r = m.rows();
+    int c = m.columns();
+
+    em = new Set[r][c];
+
+    for (int y = 0; y < r; y++)
+      for (int x = 0; x < c; x++)
+        em[y][x] = mt;
+
+    for (int y = 0; y < r; y++)
+      for (int x = 0; x < c; x++) {
+	int q = m.look(x, y);
+
+	if (q >= 0)
+	  adjoin(new Eqn(q - marks_near(x, y), unknowns_near(x, y)));
+      }
+  }
+
+  private PointSet unknowns_near(int x, int y) { // Returns the set of
+    PointSet ps = new PointSet(m.columns());    // points near the point
+						// (x, y) that have values
+    for (int y0 = y - 1; y0 < y + 2; y0++)	// which are not known
+      for (int x0 = x - 1; x0 < x + 2; x0++)
+        if (Map.UNPROBED == m.look(x0, y0))
+          ps = ps.adjoin(x0, y0);
+    return ps;
+  }
+
+  private int marks_near(int x, int y) { // Returns the number of marks
+    int q = 0;				 // near the point (x, y)
+
+    for (int y0 = y - 1; y0 < y + 2; y0++)
+      for (int x0 = x - 1; x0 < x + 2; x0++)
+        if (Map.MARKED == m.look(x0, y0))
+          q++;
+    return q;
+  }
+
+  /* Operations on equation maps. */
+
+  /**
+   * Get the equations that use point p.
+   */
+  Set at(Point p) {
+    return em[p.y()][p.x()];
+  }
+
+  /**
+   * Get the equations that use point p as an array, for rules that
+   * look at every pair of them.
+   */
+  Eqn[] eqns_at(Point p) {
+    Set es = at(p);
+    Eqn a[] = new Eqn[es.card()];
+    for (int i = 0; i < a.length; i++, es = es.but_first())
+      a[i] = (Eqn)es.first();
+    return a;
+  }
+
+  private boolean member(Eqn e) { // Is e in the equation map?
+    PointSet ps = e.points();
+
+    return !ps.empty() && at(ps.first()).member(e);
+  }
+
+  private void adjoin(Eqn e) { // Add e to the equation map
+    if (!member(e)) {
+      PointSet ps0 = e.points();
+      int c = m.columns();
+      for (int k = ps0.next(0); k >= 0; k = ps0.next(k + 1)) {
+	int y = k / c;
+	int x = k % c;
+	em[y][x] = em[y][x].adjoin(e);
+      }
+    }
+  }
+
+  private void remove(Eqn e) { // Remove e from the equation map
+    if (member(e)) {
+      PointSet ps0 = e.points();
+      int c = m.columns();
+      for (int k = ps0.next(0); k >= 0; k = ps0.next(k + 1)) {
+	int y = k / c;
+	int x = k % c;
+	em[y][x] = em[y][x].remove(e);
+      }
+    }
+  }
+
+  /*
+   * When none of the rules are applicable, choose guesses a point at
+   * which to probe.  Let p be a point in equation e.  Assuming nothing
+   * else in know about point p, the single equation probability that p
+   * contains a mine based on equation e is
+   *
+   *      P(e) = e.constant() / e.points().card().
+   *
+   * Let es(p) be the set of equations that contain point p.  Let M(p)
+   * be the maximum of the single equation probabilities that p contains
+   * a mine based on the equations in es(p).  That is
+   *
+   *      M(p) = max P(e) for e in es(p).
+   *
+   * This routine picks a point p which minimizes M(p).  A random choice
+   * is made when there are many points that minimize M(p).
+   *
+   * Last updated: February 1997
+   *
+   * M(p) is now used only when the exact probability that p contains
+   * a mine, found by Probability from all the equations and the number
+   * of mines left, cannot be computed within the search budget.
+   */
+  private int choose() {
+    int r = m.rows();
+    int c = m.columns();
+
+    PointSet ps0 = unknown_points();
+    int nps0 = ps0.card();
+    if (nps0 == 0)		// Just in case...
+      return 0;
+    float prob0 = (float)m.mines_minus_marks() / (float)nps0;
+    double pm[] = probability.compute(m, em); // Null if it gave up
+
+    int k = ps0.next(0);
+    for (int n = m.pick(nps0); n > 0; n--) // Pick starting point
+      k = ps0.next(k + 1);
+
+    Point best_point = ps0.point(k);
+    int y_orig = best_point.y();
+    int x_orig = best_point.x();
+
+    double best_prob = pm != null
+      ? pm[y_orig * c + x_orig] : prob(x_orig, y_orig, prob0);
+
+    for (int j = 0; j < r; j++) { // Try the rest of the points.
+      int y = (j + y_orig) % r;
+      for (int i = 0; i < c; i++) {
+	int x = (i + x_orig) % c;
+	double p = pm != null ? pm[y * c + x] : prob(x, y, prob0);
+
+	if (p < best_prob - 1e-9) { // Ignore rounding errors
+	  best_prob = p;
+	  best_point = new Point(x, y);
+	}
+      }
+    }
+
+    return tap(best_point);
+  }
+
+  // Find max prop of all the equations
+  private float prob(int x, int y, float prob0) {
+    Set es = em[y][x];
+    if (es.empty()) {
+      if (Map.UNPROBED == m.look(x, y))
+	return prob0;
+      else
+	return 1.0f;
+    }
+    else {
+      float p = 0.0f;
+      for (; !es.empty(); es = es.but_first()) {
+        Eqn e = (Eqn)es.first();
+	float e_prob = (float)e.constant() / (float)e.points().card();
+	p = Math.max(p, e_prob);
+      }
+      return p;
+    }
+  }
+
+  private int tap(Point p) {	// Try probing
+
+    if (messages) {
+      System.out.print("Picked ");
+      p.display();
+      System.out.println();
+    }
+
+    int c = m.columns();
+    int opened[] = m.open(p.x(), p.y()); // The map opens around a 0
+    int q = m.look(p.x(), p.y());
+
+    if (q >= 0) {		// Probe points if a mine was not found.
+      PointSet ps0 = new PointSet(c).adjoin(p);
+      for (int k : opened)	// Take in the opening as one batch
+	ps0 = ps0.adjoin(k % c, k / c);
+      probe_points(ps0);
+    }
+    return q;
+  }
+
+  /* Routines for debugging.  None are used during a normal run. */
+
+  private Set all_eqns() {	// Collects all equations
+    Set es = new Set();
+    int r = m.rows();
+    int c = m.columns();
+
+    for (int y = r - 1; y >= 0; y--)
+      for (int x = c - 1; x >= 0; x--)
+        es = es.union(em[y][x]);
+    return es;
+  }
+
+  private void display() {
+    display_eqn_set(all_eqns());
+  }
+
+  private void display_eqn_set(Set es) {
+    System.out.print(" {");
+    if (!es.empty()) {
+      ((Eqn)es.first()).display();
+      for (es = es.but_first(); !es.empty(); es = es.but_first()) {
+	System.out.println(",");
+	System.out.print("  ");
+	((Eqn)es.first()).display();
+      }
+      System.out.println("}");
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import java.util.concurrent.atomic.LongAdder;
+import sp.Point;
+
+/**
+ * A rule used by a Propagator.  A rule looks at the equations that
+ * contain a point, and may probe points, mark points, or add
+ * equations.  Each rule counts the number of times it has fired.
+ * A rule keeps no other state, so propagators on different threads
+ * may share it, and its count then covers all of their games.
+ * @see Propagator
+ */
+abstract class Rule {
+  private final String name;
+  private final LongAdder fired = new LongAdder();
+
+  Rule(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Apply this rule to the equations that contain point p.
+   * @param pr		the propagator holding the equations
+   * @param p		the point
+   * @return		true if the rule fired
+   */
+  abstract boolean apply(Propagator pr, Point p);
+
+  /**
+   * Apply this rule, and count it if it fired.
+   */
+  final void run(Propagator pr, Point p) {
+    if (apply(pr, p))
+      fired.increment();
+  }
+
+  /**
+   * The name of this rule.
+   */
+  String name() {
+    return name;
+  }
+
+  /**
+   * The number of times this rule has fired.
+   */
+  long fired() {
+    return fired.sum();
+  }
+}
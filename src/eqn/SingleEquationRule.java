@@ -0,0 +1,62 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import set.*;
+import sp.Point;
+import sp.PointSet;
+
+/**
+ * Single Equation Rule
+ * <pre>
+ * (1) For any equation of the form
+ *     0 = p[0] + p[1] + ... + p[n]
+ *     all points must have value zero and therefore should be probed.
+ *
+ * (2) For any equation of the form
+ *     c = p[0] + p[1] + ... + p[n]
+ *     where c is the number of points in the equation,
+ *     all points must have value one and therefore should be marked.
+ * </pre>
+ * @see Propagator
+ */
+final class SingleEquationRule extends Rule {
+
+  SingleEquationRule() {
+    super("single equation");
+  }
+
+  boolean apply(Propagator pr, Point p) {
+    for (Set es = pr.at(p); !es.empty(); es = es.but_first()) {
+      Eqn e = (Eqn)es.first();
+      int c = e.constant();
+      PointSet ps = e.points();
+
+      if (c == 0) {		// Case 1 above
+	pr.probe_points(ps);
+	return true;
+      }
+      else if (c == ps.card()) { // Case 2 above
+	pr.mark_points(ps);
+	return true;
+      }
+    }
+    return false;
+  }
+}
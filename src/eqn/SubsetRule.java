@@ -0,0 +1,47 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import sp.Point;
+
+/**
+ * Subset Rule
+ * <pre>
+ * Consider two equations,
+ *     c[0] = p[0,0] + p[0,1] + ... + p[0,n[0]]
+ *     c[1] = p[1,0] + p[1,1] + ... + p[1,n[1]]
+ * If the points in equation 0 are a proper subset of the points
+ * in equation 1, the following equation should be added:
+ *     c[1] - c[0] = p[1,0] + p[1,1] + ... + p[1,n[1]]
+ *                   - p[0,0] - p[0,1] - ... - p[0,n[0]]
+ * </pre>
+ * The propagator also applies this rule whenever it probes or marks
+ * a point.
+ * @see Propagator#subset
+ */
+final class SubsetRule extends Rule {
+
+  SubsetRule() {
+    super("subset");
+  }
+
+  boolean apply(Propagator pr, Point p) {
+    return pr.subset(p);
+  }
+}
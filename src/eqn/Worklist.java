@@ -0,0 +1,86 @@
+package eqn;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import sp.PointSet;
+
+/**
+ * The class Worklist implements a first in, first out queue of point
+ * numbers in which each point appears at most once.  Point (x, y) is
+ * numbered <code>y * columns + x</code>, as in sp.PointSet.  The queue
+ * is a circular array with room for every point of the board, so
+ * adding and removing points allocates nothing.
+ * @see Propagator
+ */
+final class Worklist {
+  private final int queue[];	// Circular array of queued points
+  private final boolean queued[]; // queued[k] is true if k is queued
+  private int head = 0;		// Index of the first queued point
+  private int size = 0;		// Number of queued points
+
+  /**
+   * Construct an empty worklist.
+   * @param n		the number of points on the board
+   */
+  Worklist(int n) {
+    queue = new int[n];
+    queued = new boolean[n];
+  }
+
+  /**
+   * Is the worklist empty?
+   */
+  boolean empty() {
+    return size == 0;
+  }
+
+  /**
+   * Add point k unless it is already queued.
+   */
+  void add(int k) {
+    if (!queued[k]) {
+      queued[k] = true;
+      int i = head + size++;
+      queue[i < queue.length ? i : i - queue.length] = k;
+    }
+  }
+
+  /**
+   * Add the points of a set that are not already queued.
+   */
+  void add(PointSet ps) {
+    for (int k = ps.next(0); k >= 0; k = ps.next(k + 1))
+      add(k);
+  }
+
+  /**
+   * Remove the first point.
+   * @return		the point, or -1 if the worklist is empty
+   */
+  int remove() {
+    if (size == 0)
+      return -1;
+    int k = queue[head];
+    queued[k] = false;
+    if (++head == queue.length)
+      head = 0;
+    size--;
+    return k;
+  }
+}
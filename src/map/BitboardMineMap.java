@@ -0,0 +1,584 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The class BitboardMineMap implements a mine map that behaves exactly
+ * like MineMap, but packs its state into bit sets.  Cell (x, y) is bit
+ * <code>y * columns + x</code> of each of the mine, mark and unprobed
+ * bit sets, and the number of adjacent mines is kept in a byte array.
+ * Cloning the map copies a few arrays, which makes it a good choice
+ * for strategies that simulate moves on clones. <p>
+ * Given the same seed, a BitboardMineMap places its mines in the same
+ * cells as a MineMap.
+ *
+ * @see MineMap
+ * @see Strategy
+ */
+public class BitboardMineMap implements Map {
+
+    int mmm;            // Mines minus marks
+    int r;            // Rows
+    int c;            // Columns
+    int revealed = 0;
+    int unprobed_safe;  // Cells without mines that have not been probed
+    long zobrist = 0;   // Zobrist hash of what look shows
+    Frontier frontier;  // Cells and numbers on the frontier
+    private MapListener listener;   // Null if nobody is listening
+    private int queue[];        // Cells to open from, made on first use
+
+    /* Bit k of mines is set when cell k contains a mine. */
+    long mines[];
+
+    /* Bit k of marks is set when cell k is marked. */
+    long marks[];
+
+    /* Bit k of unprobed is set when cell k is not probed.
+     * As in MineMap, a marked cell is also unprobed. */
+    long unprobed[];
+
+    /* weights[k] is the number of mines in cells adjacent to cell k. */
+    byte weights[];
+
+    /* Source of random numbers for placing mines and for pick. */
+    private SplittableRandom random;
+
+    private boolean victory = false;
+    private boolean finished = false;
+    private boolean probed = false;
+
+    /**
+     * Create a mine map.
+     *
+     * @param mines   number of mines in mine map
+     * @param rows    rows in map
+     * @param columns columns in map
+     * @return a mine map
+     */
+    BitboardMineMap(int mines, int rows, int columns) {
+        this(mines, rows, columns, new SplittableRandom());
+    }
+
+    /**
+     * Create a mine map whose mines, and whose answers to pick, are
+     * determined by a seed.
+     *
+     * @param mines   number of mines in mine map
+     * @param rows    rows in map
+     * @param columns columns in map
+     * @param seed    seed for the random number generator
+     * @return a mine map
+     */
+    BitboardMineMap(int mines, int rows, int columns, long seed) {
+        this(mines, rows, columns, new SplittableRandom(seed));
+    }
+
+    private BitboardMineMap(int mines, int rows, int columns,
+                            SplittableRandom random) {
+        this.random = random;
+        mmm = mines;
+        r = rows;
+        c = columns;
+
+        int n = r * c;
+        int words = (n + 63) >>> 6;
+        this.mines = new long[words];
+        marks = new long[words];
+        unprobed = new long[words];
+        weights = new byte[n];
+        frontier = new Frontier(r, c);
+
+        for (int w = 0; w < words; w++)
+            unprobed[w] = -1L;
+        if ((n & 63) != 0)        // Keep unused bits clear
+            unprobed[words - 1] = (1L << n) - 1;
+
+        if (mines / 2 >= n)    // Odd parameters
+            finished = true;        // Just punt
+        else {
+            unprobed_safe = n - mines;
+            for (int k = mines; k > 0; ) { // Place mines randomly
+                int x = pick(c);
+                int y = pick(r);
+                if (!get(this.mines, y * c + x)) {
+                    set(this.mines, y * c + x);
+                    k--;
+                }
+            }
+
+            for (int y = 0; y < r; y++) // Compute weights
+                for (int x = 0; x < c; x++) {
+                    int w = 0;
+                    int y0 = Math.max(0, y - 1);
+                    int y1 = Math.min(r, y + 2);
+                    int x0 = Math.max(0, x - 1);
+                    int x1 = Math.min(c, x + 2);
+                    for (int yw = y0; yw < y1; yw++)
+                        for (int xw = x0; xw < x1; xw++)
+                            if (get(this.mines, yw * c + xw)) w++;
+                    weights[y * c + x] = (byte) w;
+                }
+        }
+    }
+
+    /* Copy constructor used by Clone. */
+    private BitboardMineMap(BitboardMineMap m) {
+        random = m.random.split();
+        mmm = m.mmm;
+        r = m.r;
+        c = m.c;
+        revealed = m.revealed;
+        unprobed_safe = m.unprobed_safe;
+        zobrist = m.zobrist;
+        victory = m.victory;
+        finished = m.finished;
+        probed = m.probed;
+
+        int words = m.mines.length;
+        mines = m.mines;        // Mines never move, so share them
+        marks = new long[words];
+        unprobed = new long[words];
+        System.arraycopy(m.marks, 0, marks, 0, words);
+        System.arraycopy(m.unprobed, 0, unprobed, 0, words);
+        weights = m.weights;    // Likewise for the weights
+        frontier = new Frontier(m.frontier);
+    }
+
+    private static boolean get(long bits[], int k) {
+        return (bits[k >>> 6] & (1L << k)) != 0;
+    }
+
+    private static void set(long bits[], int k) {
+        bits[k >>> 6] |= 1L << k;
+    }
+
+    private static void clear(long bits[], int k) {
+        bits[k >>> 6] &= ~(1L << k);
+    }
+
+    /* The n bits of a bitset from bit k on, for n of at most 3. */
+    private static int bits(long bits[], int k, int n) {
+        int w = k >>> 6;
+        long v = bits[w] >>> k;
+        if ((k & 63) + n > 64 && w + 1 < bits.length)
+            v |= bits[w + 1] << -k;
+        return (int) v & ((1 << n) - 1);
+    }
+
+    /* The bits of cells (x - 1, y), (x, y) and (x + 1, y), as bits 0, 1
+     * and 2, leaving out cells outside the map. */
+    private int row(long bits[], int x, int y) {
+        if (y < 0 || y >= r)
+            return 0;
+        int x0 = Math.max(0, x - 1);
+        int x1 = Math.min(c - 1, x + 1);
+        if (x0 > x1)
+            return 0;
+        return bits(bits, y * c + x0, x1 - x0 + 1) << (x0 - x + 1);
+    }
+
+    /**
+     * Pick a number at random.
+     *
+     * @param n a positive number
+     * @return a nonnegative number less than n
+     */
+    public int pick(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive");
+        return random.nextInt(n);
+    }
+
+    /**
+     * Has this game been won?
+     * A game is won if every cell which does not contain a mine has
+     * been probed, but no cell with a mine has been probed.
+     */
+    public boolean won() {
+        return victory;
+    }
+
+    /**
+     * Is this game finished?
+     * The game is finished if it has been won or if a cell with a
+     * mine has been probed.
+     */
+    public boolean done() {
+        if (finished)
+            return true;
+        if (unprobed_safe > 0)
+            return false;
+        finished = true;
+        victory = true;
+        return true;
+    }
+
+    /**
+     * Has this game had at least one successful probe.
+     */
+    public boolean probed() {
+        return probed;
+    }
+
+    /**
+     * Probe a cell for a mine.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     * @see Map#probe
+     */
+    public int probe(int x, int y) {
+        if (finished)
+            return look(x, y);
+        else if (x < 0 || x >= c || y < 0 || y >= r)
+            return OUT_OF_BOUNDS;
+        int k = y * c + x;
+        if (get(marks, k))
+            return MARKED;
+        boolean fresh = get(unprobed, k);
+        if (fresh) {
+            revealed++;
+            clear(unprobed, k);
+            if (!get(mines, k))
+                unprobed_safe--;
+            zobrist ^= Zobrist.key(k, get(mines, k) ? BOOM : weights[k]);
+            frontier.probe(k, get(mines, k) ? BOOM : weights[k]);
+        }
+        if (get(mines, k)) {
+            finished = true;
+            if (fresh && listener != null)
+                tell(x, y, BOOM);
+            return BOOM;
+        }
+        probed = true;
+        if (fresh && listener != null)
+            tell(x, y, weights[k]);
+        return weights[k];
+    }
+
+    /**
+     * Look at a cell.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     * @see Map#look
+     */
+    public int look(int x, int y) {
+        if (x < 0 || x >= c || y < 0 || y >= r)
+            return OUT_OF_BOUNDS;
+        int k = y * c + x;
+        if (get(marks, k))
+            return MARKED;
+        else if (get(unprobed, k))
+            return UNPROBED;
+        else if (get(mines, k))
+            return BOOM;
+        else
+            return weights[k];
+    }
+
+    /**
+     * Mark a cell.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     * @see Map#mark
+     */
+    public int mark(int x, int y) {
+        if (finished)
+            return look(x, y);
+        else if (x < 0 || x >= c || y < 0 || y >= r)
+            return OUT_OF_BOUNDS;
+        int k = y * c + x;
+        if (get(marks, k))
+            return MARKED;
+        else if (get(unprobed, k)) {
+            revealed++;
+            mmm--;
+            set(marks, k);
+            zobrist ^= Zobrist.key(k, MARKED);
+            frontier.mark(k);
+            if (listener != null)
+                listener.marked(x, y);
+            return MARKED;
+        } else
+            return get(mines, k) ? BOOM : weights[k];
+    }
+
+    /**
+     * Unmark a cell.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     * @see Map#unmark
+     */
+    public int unmark(int x, int y) {
+        if (finished)
+            return look(x, y);
+        else if (x < 0 || x >= c || y < 0 || y >= r)
+            return OUT_OF_BOUNDS;
+        int k = y * c + x;
+        if (get(marks, k)) {
+            mmm++;
+            clear(marks, k);
+            zobrist ^= Zobrist.key(k, MARKED);
+            frontier.unmark(k);
+            if (listener != null)
+                listener.unmarked(x, y);
+            return UNPROBED;
+        } else if (get(unprobed, k))
+            return UNPROBED;
+        else
+            return get(mines, k) ? BOOM : weights[k];
+    }
+
+    /**
+     * Probe a cell, and open the region around it if it shows 0,
+     * queueing cells in an array kept from one opening to the next.
+     *
+     * @see Map#open
+     */
+    public int[] open(int x, int y) {
+        if (finished || x < 0 || x >= c || y < 0 || y >= r)
+            return new int[0];
+        int k = y * c + x;
+        if (!get(unprobed, k) || get(marks, k))
+            return new int[0];
+        if (queue == null)
+            queue = new int[r * c];
+        int n = 0;
+        probe(x, y);
+        queue[n++] = k;
+        for (int q = 0; q < n; q++) {
+            k = queue[q];
+            if (get(mines, k) || weights[k] != 0)
+                continue;
+            int u = k % c;
+            int v = k / c;
+            int y0 = Math.max(0, v - 1);
+            int y1 = Math.min(r, v + 2);
+            int x0 = Math.max(0, u - 1);
+            int x1 = Math.min(c, u + 2);
+            for (int j = y0; j < y1; j++)
+                for (int i = x0; i < x1; i++)
+                    if (get(unprobed, j * c + i) && !get(marks, j * c + i)) {
+                        probe(i, j);
+                        queue[n++] = j * c + i;
+                    }
+        }
+        return Arrays.copyOf(queue, n);
+    }
+
+    /**
+     * Provide the number of mines minus the
+     * number of marks in this mine map.
+     */
+    public int mines_minus_marks() {
+        return mmm;
+    }
+
+    /**
+     * Find the neighbours of a cell for which look returns a value,
+     * taking three cells at a time from the bitsets for unprobed and
+     * marked cells.
+     *
+     * @see Map#neighbourMask
+     */
+    public int neighbourMask(int x, int y, int value) {
+        int above, middle, below;
+        if (value == MARKED) {
+            above = row(marks, x, y - 1);
+            middle = row(marks, x, y);
+            below = row(marks, x, y + 1);
+        } else if (value == UNPROBED) {
+            above = row(unprobed, x, y - 1) & ~row(marks, x, y - 1);
+            middle = row(unprobed, x, y) & ~row(marks, x, y);
+            below = row(unprobed, x, y + 1) & ~row(marks, x, y + 1);
+        } else
+            return Map.super.neighbourMask(x, y, value);
+        return above | (middle & 1) << 3 | (middle & 4) << 2 | below << 5;
+    }
+
+    /**
+     * Count the cells for which look returns UNPROBED.
+     *
+     * @see Map#unprobedCells
+     */
+    public int unprobedCells() {
+        return frontier.unprobedCells();
+    }
+
+    /**
+     * Is a cell on the frontier, which is kept up to date as cells are
+     * probed, marked and unmarked?
+     *
+     * @see Map#isFrontier
+     */
+    public boolean isFrontier(int x, int y) {
+        return x >= 0 && x < c && y >= 0 && y < r && frontier.isCell(y * c + x);
+    }
+
+    /**
+     * Count the frontier cells.
+     *
+     * @see Map#frontierSize
+     */
+    public int frontierSize() {
+        return frontier.cells();
+    }
+
+    /**
+     * Find the next frontier cell.
+     *
+     * @see Map#nextFrontier
+     */
+    public int nextFrontier(int k) {
+        return frontier.nextCell(k);
+    }
+
+    /**
+     * Is a cell a frontier number?
+     *
+     * @see Map#isFrontierNumber
+     */
+    public boolean isFrontierNumber(int x, int y) {
+        return x >= 0 && x < c && y >= 0 && y < r && frontier.isNumber(y * c + x);
+    }
+
+    /**
+     * Count the frontier numbers.
+     *
+     * @see Map#frontierNumbers
+     */
+    public int frontierNumbers() {
+        return frontier.numbers();
+    }
+
+    /**
+     * Find the next frontier number.
+     *
+     * @see Map#nextFrontierNumber
+     */
+    public int nextFrontierNumber(int k) {
+        return frontier.nextNumber(k);
+    }
+
+    /**
+     * Provide the Zobrist hash of this mine map, which is updated
+     * as cells are probed, marked and unmarked.
+     *
+     * @see Map#zobrist
+     */
+    public long zobrist() {
+        return zobrist;
+    }
+
+    /**
+     * Add a listener to be told about each change to this mine map.
+     *
+     * @see Map#addListener
+     */
+    public boolean addListener(MapListener l) {
+        listener = Listeners.add(listener, l);
+        return true;
+    }
+
+    /**
+     * Remove a listener added with addListener.
+     *
+     * @see Map#removeListener
+     */
+    public void removeListener(MapListener l) {
+        listener = Listeners.remove(listener, l);
+    }
+
+    /* Tell the listeners that a cell was revealed, and then whether
+     * that finished the game. */
+    private void tell(int x, int y, int value) {
+        listener.revealed(x, y, value);
+        if (value < 0 && unprobed_safe > 0)
+            listener.finished(false);
+        else if (value >= 0 && unprobed_safe == 0)
+            listener.finished(true);
+    }
+
+    /**
+     * Provide the number of rows in this mine map.
+     */
+    public int rows() {
+        return r;
+    }
+
+    /**
+     * Provide the number of columns in this mine map.
+     */
+    public int columns() {
+        return c;
+    }
+
+    /**
+     * Display the mine map on the standard output stream.
+     * Used only for debugging.
+     */
+    public void display() {
+        for (int y = 0; y < r; y++) {
+            int z = r - 1 - y;
+            System.out.print(z % 10 + ":");
+            for (int x = 0; x < c; x++) {
+                int k = z * c + x;
+                if (get(marks, k))
+                    if (get(mines, k))
+                        System.out.print("-");
+                    else
+                        System.out.print("?");
+                else if (get(mines, k))
+                    System.out.print("X");
+                else if (get(unprobed, k))
+                    System.out.print(" ");
+                else
+                    System.out.print(weights[k]);
+            }
+            System.out.println();
+        }
+        System.out.print("  ");
+        for (int x = 0; x < c; x++)
+            System.out.print(x % 10);
+    }
+
+    public BitboardMineMap Clone() {
+        return new BitboardMineMap(this);
+    }
+
+    public int Revealed() {
+        return revealed;
+    }
+
+    public boolean HasMine(int x, int y) {
+        return get(mines, y * c + x);
+    }
+
+    public void Finish() {
+        if (!finished && unprobed_safe > 0 && listener != null)
+            listener.finished(false);
+        this.finished = true;
+    }
+}
@@ -51,6 +51,22 @@ class DisplayMap extends Canvas implements Map, Runnable {
     private int width;
     private int height;
     private boolean die = false;          // Should thread die?
+    private boolean changed;            // Did the last move change the map?
+
+    /* Notes the squares changed by a move, so they get repainted. */
+    private final MapListener changes = new MapListener() {
+        public void revealed(int x, int y, int value) {
+            change(x, y);
+        }
+
+        public void marked(int x, int y) {
+            change(x, y);
+        }
+
+        public void unmarked(int x, int y) {
+            change(x, y);
+        }
+    };
 
     /**
      * Create a displayable mine map.
@@ -73,6 +89,7 @@ class DisplayMap extends Canvas implements Map, Runnable {
         this.status = status;
         this.tally = tally;
         m = new MineMap(mines, rows, columns);
+        m.addListener(changes);
         width = unit * c + 1;
         height = unit * r + 1;
         digit = new String[neighbors + 1];
@@ -178,38 +195,50 @@ class DisplayMap extends Canvas implements Map, Runnable {
     }
 
     public int probe(int x, int y) {
-        int q0 = m.look(x, y);
-        int q1 = m.probe(x, y);
-        if (q0 != q1) {
-            needs_update[y][x] = true;
+        changed = false;
+        int q = m.probe(x, y);
+        if (changed) {
             repaint();            // When a change to the display is made
             pause();                // pause so it can be seen
         }
-        return q1;
+        return q;
+    }
+
+    public int[] open(int x, int y) {
+        changed = false;
+        int opened[] = m.open(x, y);
+        if (changed) {
+            repaint();            // Show the whole opening at once
+            pause();
+        }
+        return opened;
     }
 
     public int mark(int x, int y) {
-        int q0 = m.look(x, y);
-        int q1 = m.mark(x, y);
-        if (q0 != q1) {
-            needs_update[y][x] = true;
+        changed = false;
+        int q = m.mark(x, y);
+        if (changed) {
             repaint();            // When a change to the display is made
             pause();                    // pause so it can be seen
         }
         show_tally();
-        return q1;
+        return q;
     }
 
     public int unmark(int x, int y) {
-        int q0 = m.look(x, y);
-        int q1 = m.unmark(x, y);
-        if (q0 != q1) {
-            needs_update[y][x] = true;
+        changed = false;
+        int q = m.unmark(x, y);
+        if (changed) {
             repaint();            // When a change to the display is made
             pause();                    // pause so it can be seen
         }
         show_tally();
-        return q1;
+        return q;
+    }
+
+    private void change(int x, int y) {
+        needs_update[y][x] = true;
+        changed = true;
     }
 
     private void pause() {
@@ -241,6 +270,50 @@ class DisplayMap extends Canvas implements Map, Runnable {
         return m.look(x, y);
     }
 
+    public int neighbourMask(int x, int y, int value) {
+        return m.neighbourMask(x, y, value);
+    }
+
+    public int unprobedCells() {
+        return m.unprobedCells();
+    }
+
+    public boolean isFrontier(int x, int y) {
+        return m.isFrontier(x, y);
+    }
+
+    public int frontierSize() {
+        return m.frontierSize();
+    }
+
+    public int nextFrontier(int k) {
+        return m.nextFrontier(k);
+    }
+
+    public boolean isFrontierNumber(int x, int y) {
+        return m.isFrontierNumber(x, y);
+    }
+
+    public int frontierNumbers() {
+        return m.frontierNumbers();
+    }
+
+    public int nextFrontierNumber(int k) {
+        return m.nextFrontierNumber(k);
+    }
+
+    public boolean addListener(MapListener l) {
+        return m.addListener(l);
+    }
+
+    public void removeListener(MapListener l) {
+        m.removeListener(l);
+    }
+
+    public long zobrist() {
+        return m.zobrist();
+    }
+
     public boolean won() {
         return m.won();
     }
@@ -300,6 +373,7 @@ class DisplayMap extends Canvas implements Map, Runnable {
         if (t != null && t.isAlive())
             return;
         m = new MineMap(mines, r, c);
+        m.addListener(changes);
         show_tally();
         map_needs_update = true;
         repaint();
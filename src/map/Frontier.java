@@ -0,0 +1,246 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+/**
+ * The frontier of a mine map, kept up to date as cells are probed,
+ * marked and unmarked.  Frontier cells are unprobed, unmarked cells
+ * next to a cell showing a number, and frontier numbers are cells
+ * showing a number next to an unprobed, unmarked cell.  Cell (x, y) is
+ * bit <code>y * columns + x</code> of each bit set.  Each change visits
+ * the eight neighbours of one cell, so the mine maps that own a
+ * frontier answer questions about it without scanning the map.
+ *
+ * @see Map#isFrontier
+ * @see Map#isFrontierNumber
+ */
+final class Frontier {
+
+    private final int r;            // Rows
+    private final int c;            // Columns
+    private int unprobedCount;      // Cells that look UNPROBED
+    private int cellCount;          // Frontier cells
+    private int numberCount;        // Frontier numbers
+
+    /* Bit k of hidden is set when cell k looks UNPROBED. */
+    private final long hidden[];
+
+    /* Bit k of shown is set when cell k shows a number. */
+    private final long shown[];
+
+    /* Bit k of cells is set when cell k is a frontier cell. */
+    private final long cells[];
+
+    /* Bit k of numbers is set when cell k is a frontier number. */
+    private final long numbers[];
+
+    /* hiddenAround[k] is the number of neighbours of cell k that
+     * look UNPROBED, and shownAround[k] is the number that show a
+     * number. */
+    private final byte hiddenAround[];
+    private final byte shownAround[];
+
+    /**
+     * Create the frontier of a map on which nothing has been probed
+     * or marked.  It is empty.
+     *
+     * @param rows    rows in map
+     * @param columns columns in map
+     */
+    Frontier(int rows, int columns) {
+        r = rows;
+        c = columns;
+        int n = r * c;
+        int words = (n + 63) >>> 6;
+        hidden = new long[words];
+        shown = new long[words];
+        cells = new long[words];
+        numbers = new long[words];
+        hiddenAround = new byte[n];
+        shownAround = new byte[n];
+        unprobedCount = n;
+        for (int k = 0; k < n; k++)
+            set(hidden, k);
+        for (int y = 0; y < r; y++)
+            for (int x = 0; x < c; x++)
+                hiddenAround[y * c + x] = (byte) ((Math.min(r, y + 2) - Math.max(0, y - 1))
+                        * (Math.min(c, x + 2) - Math.max(0, x - 1)) - 1);
+    }
+
+    /**
+     * Copy a frontier, to follow a clone of its map.
+     */
+    Frontier(Frontier f) {
+        r = f.r;
+        c = f.c;
+        unprobedCount = f.unprobedCount;
+        cellCount = f.cellCount;
+        numberCount = f.numberCount;
+        hidden = f.hidden.clone();
+        shown = f.shown.clone();
+        cells = f.cells.clone();
+        numbers = f.numbers.clone();
+        hiddenAround = f.hiddenAround.clone();
+        shownAround = f.shownAround.clone();
+    }
+
+    private static boolean get(long bits[], int k) {
+        return (bits[k >>> 6] & (1L << k)) != 0;
+    }
+
+    private static void set(long bits[], int k) {
+        bits[k >>> 6] |= 1L << k;
+    }
+
+    private static void clear(long bits[], int k) {
+        bits[k >>> 6] &= ~(1L << k);
+    }
+
+    /* The first set bit numbered k or more, or -1 if there is none. */
+    private static int next(long bits[], int k) {
+        if (k < 0)
+            k = 0;
+        int w = k >>> 6;
+        if (w >= bits.length)
+            return -1;
+        long word = bits[w] & (-1L << k);
+        while (word == 0) {
+            if (++w == bits.length)
+                return -1;
+            word = bits[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Record that cell k, which looked UNPROBED, was probed and
+     * shows value.
+     */
+    void probe(int k, int value) {
+        clear(hidden, k);
+        unprobedCount--;
+        if (get(cells, k)) {
+            clear(cells, k);
+            cellCount--;
+        }
+        boolean number = value >= 0;
+        if (number) {
+            set(shown, k);
+            if (hiddenAround[k] > 0) {
+                set(numbers, k);
+                numberCount++;
+            }
+        }
+        int x = k % c;
+        int y = k / c;
+        for (int b = 0; b < 8; b++) {
+            int i = x + Neighbours.dx(b);
+            int j = y + Neighbours.dy(b);
+            if (i < 0 || i >= c || j < 0 || j >= r)
+                continue;
+            int n = j * c + i;
+            hide(n, -1);
+            if (number && shownAround[n]++ == 0 && get(hidden, n)) {
+                set(cells, n);
+                cellCount++;
+            }
+        }
+    }
+
+    /**
+     * Record that cell k, which looked UNPROBED, was marked.
+     */
+    void mark(int k) {
+        clear(hidden, k);
+        unprobedCount--;
+        if (get(cells, k)) {
+            clear(cells, k);
+            cellCount--;
+        }
+        around(k, -1);
+    }
+
+    /**
+     * Record that cell k, which was marked, was unmarked.
+     */
+    void unmark(int k) {
+        set(hidden, k);
+        unprobedCount++;
+        if (shownAround[k] > 0) {
+            set(cells, k);
+            cellCount++;
+        }
+        around(k, 1);
+    }
+
+    /* Add d to the hidden count of each neighbour of cell k. */
+    private void around(int k, int d) {
+        int x = k % c;
+        int y = k / c;
+        for (int b = 0; b < 8; b++) {
+            int i = x + Neighbours.dx(b);
+            int j = y + Neighbours.dy(b);
+            if (i >= 0 && i < c && j >= 0 && j < r)
+                hide(j * c + i, d);
+        }
+    }
+
+    /* Add d to the hidden count of cell n, which may join or leave the
+     * frontier numbers. */
+    private void hide(int n, int d) {
+        hiddenAround[n] += d;
+        if (!get(shown, n))
+            return;
+        if (hiddenAround[n] == 0 && get(numbers, n)) {
+            clear(numbers, n);
+            numberCount--;
+        } else if (hiddenAround[n] > 0 && !get(numbers, n)) {
+            set(numbers, n);
+            numberCount++;
+        }
+    }
+
+    int unprobedCells() {
+        return unprobedCount;
+    }
+
+    boolean isCell(int k) {
+        return get(cells, k);
+    }
+
+    int cells() {
+        return cellCount;
+    }
+
+    int nextCell(int k) {
+        return next(cells, k);
+    }
+
+    boolean isNumber(int k) {
+        return get(numbers, k);
+    }
+
+    int numbers() {
+        return numberCount;
+    }
+
+    int nextNumber(int k) {
+        return next(numbers, k);
+    }
+}
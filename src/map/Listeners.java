@@ -0,0 +1,83 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+/**
+ * A listener that passes each call on to two others, in the manner of
+ * java.awt.AWTEventMulticaster.  A mine map keeps its listeners in a
+ * single field, which is null when there are none, so a map nobody
+ * listens to pays one test per change.
+ */
+final class Listeners implements MapListener {
+
+    private final MapListener a;
+    private final MapListener b;
+
+    private Listeners(MapListener a, MapListener b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * The listener made by adding b to a, either of which may be null.
+     */
+    static MapListener add(MapListener a, MapListener b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        return new Listeners(a, b);
+    }
+
+    /**
+     * The listener made by removing the last b added from a, which
+     * may be null.
+     */
+    static MapListener remove(MapListener a, MapListener b) {
+        if (a == b)
+            return null;
+        if (!(a instanceof Listeners))
+            return a;
+        Listeners l = (Listeners) a;
+        if (l.b == b)
+            return l.a;
+        MapListener rest = remove(l.a, b);
+        return rest == l.a ? l : add(rest, l.b);
+    }
+
+    public void revealed(int x, int y, int value) {
+        a.revealed(x, y, value);
+        b.revealed(x, y, value);
+    }
+
+    public void marked(int x, int y) {
+        a.marked(x, y);
+        b.marked(x, y);
+    }
+
+    public void unmarked(int x, int y) {
+        a.unmarked(x, y);
+        b.unmarked(x, y);
+    }
+
+    public void finished(boolean won) {
+        a.finished(won);
+        b.finished(won);
+    }
+}
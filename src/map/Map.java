@@ -20,6 +20,8 @@ the Free Software Foundation, 59 Temple Place - Suite 330,
 Boston, MA 02111-1307, USA.
 */
 
+import java.util.Arrays;
+
 /**
  * The inteface Map describes a mine map.  A strategy operates on a mine
  * map. By invoking the operations of probing and marking, the strategy
@@ -181,5 +183,270 @@ public interface Map {
 
   boolean HasMine(int x, int y);
 
+  /**
+   * Find the neighbours of a cell for which look returns a value.
+   * Neighbours outside the map are never unprobed or marked, but
+   * they are <code>OUT_OF_BOUNDS</code>.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   * @param value	the value to look for
+   * @return		a mask with bit b set if look returns value for
+   *			neighbour b, numbered as in Neighbours
+   * @see Neighbours
+   */
+  default int neighbourMask(int x, int y, int value) {
+    int mask = 0;
+    for (int b = 0; b < 8; b++)
+      if (look(x + Neighbours.dx(b), y + Neighbours.dy(b)) == value)
+	mask |= 1 << b;
+    return mask;
+  }
+
+  /**
+   * Count the unprobed neighbours of a cell, not counting marked cells.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   * @return		the number of neighbours for which look returns
+   *			<code>UNPROBED</code>
+   */
+  default int unprobedNeighbours(int x, int y) {
+    return Integer.bitCount(neighbourMask(x, y, UNPROBED));
+  }
+
+  /**
+   * Count the marked neighbours of a cell.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   * @return		the number of neighbours for which look returns
+   *			<code>MARKED</code>
+   */
+  default int markedNeighbours(int x, int y) {
+    return Integer.bitCount(neighbourMask(x, y, MARKED));
+  }
+
+  /**
+   * Probe a cell, and if it shows 0, open the region around it as a
+   * player clicking on it would: each unmarked, unprobed neighbour of a
+   * cell showing 0 is probed, and so on out to the cells showing other
+   * numbers.  No probe but the first can find a mine.  The region is
+   * opened breadth first, so a large one does not use up the stack.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   * @return		the cells revealed, numbered as for nextFrontier, in
+   *			the order they were revealed.  The first is (x, y).
+   *			None are revealed if the game is finished or the
+   *			cell is out of bounds, marked or already probed.
+   */
+  default int[] open(int x, int y) {
+    if (done() || look(x, y) != UNPROBED)
+      return new int[0];
+    int c = columns();
+    int queue[] = new int[rows() * c];
+    int n = 0;
+    probe(x, y);
+    queue[n++] = y * c + x;
+    for (int i = 0; i < n; i++) {
+      int u = queue[i] % c;
+      int v = queue[i] / c;
+      if (look(u, v) == 0)
+	for (int b = 0; b < 8; b++) {
+	  int s = u + Neighbours.dx(b);
+	  int t = v + Neighbours.dy(b);
+	  if (look(s, t) == UNPROBED) {
+	    probe(s, t);
+	    queue[n++] = t * c + s;
+	  }
+	}
+    }
+    return Arrays.copyOf(queue, n);
+  }
+
+  /**
+   * Open a cell as open does, but list the cells revealed in the order a
+   * recursive flood fill probes them: depth first from (x, y), trying
+   * the neighbours of each cell showing 0 column by column, as in
+   * <pre>
+   *     for (int i = x - 1; i &lt; x + 2; i++)
+   *         for (int j = y - 1; j &lt; y + 2; j++)
+   *             ...
+   * </pre>
+   * Strategies that break ties by the order cells were revealed keep the
+   * order they had when they opened regions themselves.  The stack is
+   * kept in arrays, so a large region does not use up the call stack.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   * @return		the cells revealed, numbered as for nextFrontier
+   * @see Map#open
+   */
+  default int[] openDepthFirst(int x, int y) {
+    int cells[] = open(x, y);
+    if (cells.length < 2)
+      return cells;
+    int c = columns();
+    int sorted[] = cells.clone();
+    Arrays.sort(sorted);
+    boolean seen[] = new boolean[cells.length];	// By index in sorted
+    int order[] = new int[cells.length];
+    int stack[] = new int[cells.length];
+    int next[] = new int[cells.length];	// The neighbour each cell tries next
+    int n = 0;
+    int top = 0;
+    seen[Arrays.binarySearch(sorted, cells[0])] = true;
+    order[n++] = cells[0];
+    stack[top++] = cells[0];
+    while (top > 0) {
+      int k = stack[top - 1];
+      int b = next[top - 1]++;
+      if (b == 9 || look(k % c, k / c) != 0) {
+	next[--top] = 0;
+	continue;
+      }
+      int i = k % c - 1 + b / 3;
+      int j = k / c - 1 + b % 3;
+      if (i < 0 || i >= c || j < 0 || j >= rows())
+	continue;
+      int s = Arrays.binarySearch(sorted, j * c + i);
+      if (s >= 0 && !seen[s]) {
+	seen[s] = true;
+	order[n++] = j * c + i;
+	stack[top++] = j * c + i;
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Count the cells for which look returns <code>UNPROBED</code>.
+   * Mine maps keep this count, so this takes constant time.
+   */
+  default int unprobedCells() {
+    int n = 0;
+    for (int y = 0; y < rows(); y++)
+      for (int x = 0; x < columns(); x++)
+	if (look(x, y) == UNPROBED)
+	  n++;
+    return n;
+  }
+
+  /**
+   * Is a cell on the frontier?  A frontier cell is one for which look
+   * returns <code>UNPROBED</code> with a neighbour that shows a number.
+   * Mine maps keep their frontier up to date as cells are probed,
+   * marked and unmarked, so this takes constant time.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   */
+  default boolean isFrontier(int x, int y) {
+    if (look(x, y) != UNPROBED)
+      return false;
+    for (int b = 0; b < 8; b++)
+      if (look(x + Neighbours.dx(b), y + Neighbours.dy(b)) >= 0)
+	return true;
+    return false;
+  }
+
+  /**
+   * Count the frontier cells.
+   * @see Map#isFrontier
+   */
+  default int frontierSize() {
+    int n = 0;
+    for (int k = nextFrontier(0); k >= 0; k = nextFrontier(k + 1))
+      n++;
+    return n;
+  }
+
+  /**
+   * Find the next frontier cell.  Cell (x, y) is numbered
+   * <code>y * columns() + x</code>, so frontier cells can be visited
+   * in row order with
+   * <pre>
+   *     for (int k = m.nextFrontier(0); k &gt;= 0; k = m.nextFrontier(k + 1))
+   *         ... cell (k % m.columns(), k / m.columns()) ...
+   * </pre>
+   * @param k		the number of the cell to start from
+   * @return		the number of the first frontier cell numbered k
+   *			or more, or -1 if there is none
+   * @see Map#isFrontier
+   */
+  default int nextFrontier(int k) {
+    int c = columns();
+    for (k = Math.max(k, 0); k < rows() * c; k++)
+      if (isFrontier(k % c, k / c))
+	return k;
+    return -1;
+  }
+
+  /**
+   * Is a cell a frontier number?  A frontier number is a cell that
+   * shows a number with a neighbour for which look returns
+   * <code>UNPROBED</code>.  Like the frontier, this takes constant time
+   * for mine maps.
+   * @param x		x coordinate of cell
+   * @param y		y coordinate of cell
+   */
+  default boolean isFrontierNumber(int x, int y) {
+    return look(x, y) >= 0 && neighbourMask(x, y, UNPROBED) != 0;
+  }
+
+  /**
+   * Count the frontier numbers.
+   * @see Map#isFrontierNumber
+   */
+  default int frontierNumbers() {
+    int n = 0;
+    for (int k = nextFrontierNumber(0); k >= 0; k = nextFrontierNumber(k + 1))
+      n++;
+    return n;
+  }
+
+  /**
+   * Find the next frontier number, with cells numbered as for
+   * nextFrontier.
+   * @param k		the number of the cell to start from
+   * @return		the number of the first frontier number numbered k
+   *			or more, or -1 if there is none
+   * @see Map#nextFrontier
+   */
+  default int nextFrontierNumber(int k) {
+    int c = columns();
+    for (k = Math.max(k, 0); k < rows() * c; k++)
+      if (isFrontierNumber(k % c, k / c))
+	return k;
+    return -1;
+  }
+
+  /**
+   * A Zobrist hash of what a strategy can see of this map, that is,
+   * of the value look returns for each cell.  Maps that look the same
+   * have the same hash.  Mine maps keep their hash up to date as cells
+   * are probed, marked and unmarked, so this takes constant time.
+   * @return            the hash
+   * @see Zobrist
+   */
+  default long zobrist() {
+    return Zobrist.hash(this);
+  }
+
+  /**
+   * Add a listener to be told about each change to this map.  Clones
+   * of this map do not tell its listeners about their own changes.
+   * Mine maps support listeners, but a map need not.
+   * @param l		the listener
+   * @return		true if the listener was added, false if the
+   *			map does not support listeners
+   * @see MapListener
+   */
+  default boolean addListener(MapListener l) {
+    return false;
+  }
+
+  /**
+   * Remove a listener added with addListener.
+   * @param l		the listener
+   */
+  default void removeListener(MapListener l) {
+  }
+
   void Finish();
 }
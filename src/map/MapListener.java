@@ -0,0 +1,68 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+/**
+ * The interface MapListener is told about each change to a mine map,
+ * so that it can keep track of the map without looking at every cell
+ * after each move.  Calls are made by the thread that changed the map,
+ * after the change has been made.  Each method does nothing unless it
+ * is overridden.
+ *
+ * @see Map#addListener
+ */
+public interface MapListener {
+
+    /**
+     * A cell was probed for the first time.
+     *
+     * @param x     x coordinate of cell
+     * @param y     y coordinate of cell
+     * @param value the number of adjacent mines, or <code>BOOM</code>
+     */
+    default void revealed(int x, int y, int value) {
+    }
+
+    /**
+     * A cell was marked.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     */
+    default void marked(int x, int y) {
+    }
+
+    /**
+     * A cell was unmarked.
+     *
+     * @param x x coordinate of cell
+     * @param y y coordinate of cell
+     */
+    default void unmarked(int x, int y) {
+    }
+
+    /**
+     * The game finished.  This is called once, after the change that
+     * finished the game has been reported.
+     *
+     * @param won true if the game was won
+     */
+    default void finished(boolean won) {
+    }
+}
@@ -1,5 +1,8 @@
 package map;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
 /* Copyright (C) 1995 and 1997 John D. Ramsdell
 
 This file is part of Programmer's Minesweeper (PGMS).
@@ -37,6 +40,11 @@ public class MineMap implements Map {
     int r;            // Rows
     int c;            // Columns
     int revealed = 0;
+    int unprobed_safe;  // Cells without mines that have not been probed
+    long zobrist = 0;   // Zobrist hash of what look shows
+    Frontier frontier;  // Cells and numbers on the frontier
+    private MapListener listener;   // Null if nobody is listening
+    private int queue[];        // Cells to open from, made on first use
     /* mine_map[y][x] = -1, if cell (x, y) contains a mine or
      *                   n, where n is the number of mines in adjacent cells.
      */
@@ -51,6 +59,9 @@ public class MineMap implements Map {
      */
     boolean unprobed_map[][];
 
+    /* Source of random numbers for placing mines and for pick. */
+    private SplittableRandom random;
+
     private MineMap() {
     }
 
@@ -63,6 +74,25 @@ public class MineMap implements Map {
      * @return a mine map
      */
     MineMap(int mines, int rows, int columns) {
+        this(mines, rows, columns, new SplittableRandom());
+    }
+
+    /**
+     * Create a mine map whose mines, and whose answers to pick, are
+     * determined by a seed.  Maps made from the same seed are the same.
+     *
+     * @param mines   number of mines in mine map
+     * @param rows    rows in map
+     * @param columns columns in map
+     * @param seed    seed for the random number generator
+     * @return a mine map
+     */
+    MineMap(int mines, int rows, int columns, long seed) {
+        this(mines, rows, columns, new SplittableRandom(seed));
+    }
+
+    private MineMap(int mines, int rows, int columns, SplittableRandom random) {
+        this.random = random;
         mmm = mines;
         r = rows;
         c = columns;
@@ -70,6 +100,7 @@ public class MineMap implements Map {
         mine_map = new int[r][c];
         mark_map = new boolean[r][c];
         unprobed_map = new boolean[r][c];
+        frontier = new Frontier(r, c);
 
         for (int y = 0; y < r; y++)
             for (int x = 0; x < c; x++) {
@@ -81,6 +112,7 @@ public class MineMap implements Map {
         if (mines / 2 >= r * c)    // Odd parameters
             finished = true;        // Just punt
         else {
+            unprobed_safe = r * c - mines;
             for (int k = mines; k > 0; ) { // Place mines randomly
                 int x = pick(c);
                 int y = pick(r);
@@ -115,8 +147,7 @@ public class MineMap implements Map {
     public int pick(int n) {
         if (n <= 0)
             throw new IllegalArgumentException("n must be positive");
-        int p = (int) Math.floor((double) n * Math.random());
-        return p >= n ? p - n : p;
+        return random.nextInt(n);
     }
 
     private boolean victory = false;
@@ -136,14 +167,14 @@ public class MineMap implements Map {
      * Is this game finished?
      * The game is finished if it has been won or if a cell with a
      * mine has been probed.
+     * Probing a mine finishes the game at once, so the game has been
+     * won when no cell without a mine remains unprobed.
      */
     public boolean done() {
         if (finished)
             return true;
-        for (int y = 0; y < r; y++)
-            for (int x = 0; x < c; x++)
-                if (mine_map[y][x] < 0 != unprobed_map[y][x])
-                    return false;
+        if (unprobed_safe > 0)
+            return false;
         finished = true;
         victory = true;
         return true;
@@ -178,13 +209,21 @@ public class MineMap implements Map {
             return OUT_OF_BOUNDS;
         else if (mark_map[y][x])
             return MARKED;
-        if (unprobed_map[y][x])
+        boolean fresh = unprobed_map[y][x];
+        if (fresh) {
             revealed++;
+            if (mine_map[y][x] >= 0)
+                unprobed_safe--;
+            zobrist ^= Zobrist.key(y * c + x, mine_map[y][x]);
+            frontier.probe(y * c + x, mine_map[y][x]);
+        }
         unprobed_map[y][x] = false;
         if (mine_map[y][x] < 0)
             finished = true;
         else
             probed = true;
+        if (fresh && listener != null)
+            tell(x, y, mine_map[y][x]);
         return mine_map[y][x];
     }
 
@@ -240,6 +279,10 @@ public class MineMap implements Map {
             revealed++;
             mmm--;
             mark_map[y][x] = true;
+            zobrist ^= Zobrist.key(y * c + x, MARKED);
+            frontier.mark(y * c + x);
+            if (listener != null)
+                listener.marked(x, y);
             return MARKED;
         } else
             return mine_map[y][x];
@@ -269,6 +312,10 @@ public class MineMap implements Map {
         else if (mark_map[y][x]) {
             mmm++;
             mark_map[y][x] = false;
+            zobrist ^= Zobrist.key(y * c + x, MARKED);
+            frontier.unmark(y * c + x);
+            if (listener != null)
+                listener.unmarked(x, y);
             return UNPROBED;
         } else if (unprobed_map[y][x])
             return UNPROBED;
@@ -276,6 +323,40 @@ public class MineMap implements Map {
             return mine_map[y][x];
     }
 
+    /**
+     * Probe a cell, and open the region around it if it shows 0,
+     * queueing cells in an array kept from one opening to the next.
+     *
+     * @see Map#open
+     */
+    public int[] open(int x, int y) {
+        if (finished || x < 0 || x >= c || y < 0 || y >= r
+                || !unprobed_map[y][x] || mark_map[y][x])
+            return new int[0];
+        if (queue == null)
+            queue = new int[r * c];
+        int n = 0;
+        probe(x, y);
+        queue[n++] = y * c + x;
+        for (int k = 0; k < n; k++) {
+            int u = queue[k] % c;
+            int v = queue[k] / c;
+            if (mine_map[v][u] != 0)
+                continue;
+            int y0 = Math.max(0, v - 1);
+            int y1 = Math.min(r, v + 2);
+            int x0 = Math.max(0, u - 1);
+            int x1 = Math.min(c, u + 2);
+            for (int j = y0; j < y1; j++)
+                for (int i = x0; i < x1; i++)
+                    if (unprobed_map[j][i] && !mark_map[j][i]) {
+                        probe(i, j);
+                        queue[n++] = j * c + i;
+                    }
+        }
+        return Arrays.copyOf(queue, n);
+    }
+
     /**
      * Provide the number of mines minus the
      * number of marks in this mine map.
@@ -284,6 +365,130 @@ public class MineMap implements Map {
         return mmm;
     }
 
+    /**
+     * Find the neighbours of a cell for which look returns a value,
+     * reading the cell arrays directly for unprobed and marked cells.
+     *
+     * @see Map#neighbourMask
+     */
+    public int neighbourMask(int x, int y, int value) {
+        if (value != UNPROBED && value != MARKED)
+            return Map.super.neighbourMask(x, y, value);
+        boolean marked = value == MARKED;
+        int mask = 0;
+        for (int b = 0; b < 8; b++) {
+            int i = x + Neighbours.dx(b);
+            int j = y + Neighbours.dy(b);
+            if (i >= 0 && i < c && j >= 0 && j < r
+                    && unprobed_map[j][i] && mark_map[j][i] == marked)
+                mask |= 1 << b;
+        }
+        return mask;
+    }
+
+    /**
+     * Count the cells for which look returns UNPROBED.
+     *
+     * @see Map#unprobedCells
+     */
+    public int unprobedCells() {
+        return frontier.unprobedCells();
+    }
+
+    /**
+     * Is a cell on the frontier, which is kept up to date as cells are
+     * probed, marked and unmarked?
+     *
+     * @see Map#isFrontier
+     */
+    public boolean isFrontier(int x, int y) {
+        return x >= 0 && x < c && y >= 0 && y < r && frontier.isCell(y * c + x);
+    }
+
+    /**
+     * Count the frontier cells.
+     *
+     * @see Map#frontierSize
+     */
+    public int frontierSize() {
+        return frontier.cells();
+    }
+
+    /**
+     * Find the next frontier cell.
+     *
+     * @see Map#nextFrontier
+     */
+    public int nextFrontier(int k) {
+        return frontier.nextCell(k);
+    }
+
+    /**
+     * Is a cell a frontier number?
+     *
+     * @see Map#isFrontierNumber
+     */
+    public boolean isFrontierNumber(int x, int y) {
+        return x >= 0 && x < c && y >= 0 && y < r && frontier.isNumber(y * c + x);
+    }
+
+    /**
+     * Count the frontier numbers.
+     *
+     * @see Map#frontierNumbers
+     */
+    public int frontierNumbers() {
+        return frontier.numbers();
+    }
+
+    /**
+     * Find the next frontier number.
+     *
+     * @see Map#nextFrontierNumber
+     */
+    public int nextFrontierNumber(int k) {
+        return frontier.nextNumber(k);
+    }
+
+    /**
+     * Provide the Zobrist hash of this mine map, which is updated
+     * as cells are probed, marked and unmarked.
+     *
+     * @see Map#zobrist
+     */
+    public long zobrist() {
+        return zobrist;
+    }
+
+    /**
+     * Add a listener to be told about each change to this mine map.
+     *
+     * @see Map#addListener
+     */
+    public boolean addListener(MapListener l) {
+        listener = Listeners.add(listener, l);
+        return true;
+    }
+
+    /**
+     * Remove a listener added with addListener.
+     *
+     * @see Map#removeListener
+     */
+    public void removeListener(MapListener l) {
+        listener = Listeners.remove(listener, l);
+    }
+
+    /* Tell the listeners that a cell was revealed, and then whether
+     * that finished the game. */
+    private void tell(int x, int y, int value) {
+        listener.revealed(x, y, value);
+        if (value < 0 && unprobed_safe > 0)
+            listener.finished(false);
+        else if (value >= 0 && unprobed_safe == 0)
+            listener.finished(true);
+    }
+
     /**
      * Provide the number of rows in this mine map.
      */
@@ -326,7 +531,7 @@ public class MineMap implements Map {
     }
 
   public MineMap Clone() {
-	MineMap out = new MineMap(0,this.r,this.c);
+	MineMap out = new MineMap(0, this.r, this.c, random.split());
 	for (int y = 0; y < r; y++) {
 		for(int x = 0; x < c; x++) {
 			out.mine_map[y][x] = this.mine_map[y][x];
@@ -336,6 +541,9 @@ public class MineMap implements Map {
 	}
 	out.mmm = this.mmm;
 	out.revealed = this.revealed;
+	out.unprobed_safe = this.unprobed_safe;
+	out.zobrist = this.zobrist;
+	out.frontier = new Frontier(this.frontier);
 	out.victory = this.victory;
 	out.finished = this.finished;
 	out.probed = this.probed;
@@ -351,6 +559,8 @@ public class MineMap implements Map {
     }
 
     public void Finish(){
+        if (!finished && unprobed_safe > 0 && listener != null)
+            listener.finished(false);
         this.finished = true;
     }
 }
@@ -0,0 +1,65 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+/**
+ * The offsets of the eight neighbours of a cell, in the order of the
+ * bits of a neighbour mask.  Bit b stands for cell
+ * <code>(x + dx(b), y + dy(b))</code>.  The neighbours run row by row,
+ * from <code>y - 1</code> to <code>y + 1</code>, and from left to right
+ * within a row, as in the loop
+ * <pre>
+ *     for (int j = y - 1; j &lt; y + 2; j++)
+ *         for (int i = x - 1; i &lt; x + 2; i++)
+ *             if (i != x || j != y)
+ *                 ...
+ * </pre>
+ * A set of neighbours can be visited with
+ * <pre>
+ *     for (int mask = m.neighbourMask(x, y, Map.UNPROBED); mask != 0;
+ *          mask &amp;= mask - 1) {
+ *         int b = Integer.numberOfTrailingZeros(mask);
+ *         ... cell (x + Neighbours.dx(b), y + Neighbours.dy(b)) ...
+ *     }
+ * </pre>
+ *
+ * @see Map#neighbourMask
+ */
+public final class Neighbours {
+
+    private static final int DX[] = {-1, 0, 1, -1, 1, -1, 0, 1};
+    private static final int DY[] = {-1, -1, -1, 0, 0, 1, 1, 1};
+
+    private Neighbours() {
+    }
+
+    /**
+     * The x offset of the neighbour for bit b.
+     */
+    public static int dx(int b) {
+        return DX[b];
+    }
+
+    /**
+     * The y offset of the neighbour for bit b.
+     */
+    public static int dy(int b) {
+        return DY[b];
+    }
+}
@@ -5,6 +5,7 @@ import qlearner.ActionHistory;
 import java.awt.*;
 import java.awt.event.*;
 import java.applet.Applet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /* Copyright (C) 1995 and 1997 John D. Ramsdell
 
@@ -54,6 +55,21 @@ public class PGMS extends Applet {
 
     public static boolean isSingleRun;
 
+    /* Options for strategies that search ahead, such as sim.SimStrategy2:
+     * how many moves deep to search, and how many threads search each
+     * move. */
+    public static int searchDepth = 6;
+    public static int searchThreads = 1;
+    public static long moveBudget = 0;     // Nanoseconds per move, 0 if none
+    public static int rollouts = 1000;     // Games played out per move
+    public static long guessNodes = 8000;  // Search nodes per guess, about 2ms
+
+    /* Files holding actionHistory3x3.  The binary file and its journal
+     * are kept up to date; the CSV file is read only when there is no
+     * binary file, and written only on request. */
+    private static final String HISTORY_3X3_BIN = "action_history_3x3.bin";
+    private static final String HISTORY_3X3_CSV = "action_history_3x3.csv";
+
     /**
      * Application entry point.
      *
@@ -70,6 +86,36 @@ public class PGMS extends Applet {
      *             <dt> <code>-n</code> <var>number of games</var>
      *             <dd> play multiple games - graphics will be disabled
      *             with more than one game
+     *             <dt> <code>-j</code> <var>number of threads</var>
+     *             <dd> play multiple games in parallel, each thread
+     *             using its own instance of the strategy
+     *             <dt> <code>-seed</code> <var>seed</var>
+     *             <dd> derive each game's mine map from the given seed,
+     *             so a batch can be replayed exactly
+     *             <dt> <code>-depth</code> <var>depth</var>
+     *             <dd> search strategies look this many moves ahead
+     *             <dt> <code>-forkjoin</code> <var>number of threads</var>
+     *             <dd> search strategies search each move on this many
+     *             threads; the moves chosen do not depend on it
+     *             <dt> <code>-movebudget</code> <var>time</var>
+     *             <dd> search strategies deepen their search one move at
+     *             a time until the time, such as <code>5ms</code>, is up,
+     *             going no deeper than <code>-depth</code>
+     *             <dt> <code>-rollouts</code> <var>number of games</var>
+     *             <dd> Monte Carlo strategies play out this many games to
+     *             choose each move, on <code>-forkjoin</code> threads
+     *             <dt> <code>-guessnodes</code> <var>number of nodes</var>
+     *             <dd> equation strategies search this many nodes to find
+     *             the odds of each guess before falling back on an
+     *             estimate, or for <code>-movebudget</code> if it is given
+     *             <dt> <code>-bitboard</code>
+     *             <dd> play multiple games on bitboard mine maps
+     *             <dt> <code>-csv</code>
+     *             <dd> also export the Q learner's action history as CSV
+     *             <dt> <code>-stats</code>
+     *             <dd> print the strategy's statistics after the games,
+     *             such as how often each rule of an equation strategy
+     *             fired
      *             </dl>
      */
     public static void main(String args[]) {
@@ -79,10 +125,11 @@ public class PGMS extends Applet {
         int rows = 8;
         int columns = 8;
         int tries = 1;
-        int wins = 0;
-        int SumRevealed = 0;
-        int boardSizeSum = 0;
-        int probed = 0;
+        int threads = 1;
+        Long seed = null;        // Unseeded games
+        boolean bitboard = false;
+        boolean csv = false;
+        boolean stats = false;
 
         for (int i = 0; i < args.length; i++) // Process args
             if (args[i].equals("-i")) {
@@ -100,6 +147,12 @@ public class PGMS extends Applet {
                 mines = 10;            // Beginner game
                 rows = 8;
                 columns = 8;
+            } else if (args[i].equals("-bitboard")) {
+                bitboard = true;
+            } else if (args[i].equals("-csv")) {
+                csv = true;
+            } else if (args[i].equals("-stats")) {
+                stats = true;
             } else if (args[i].equals("-s"))
                 if (++i >= args.length) { // User supplied strategy
                     usage();
@@ -118,21 +171,107 @@ public class PGMS extends Applet {
                         usage();
                         return;
                     }
+            else if (args[i].equals("-j"))
+                if (++i >= args.length) { // Thread count supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        threads = Math.max(1, Integer.parseInt(args[i]));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad number of threads");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-seed"))
+                if (++i >= args.length) { // Seed supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        seed = Long.parseLong(args[i]);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad seed");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-depth"))
+                if (++i >= args.length) { // Search depth supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        searchDepth = Math.max(0, Integer.parseInt(args[i]));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad search depth");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-forkjoin"))
+                if (++i >= args.length) { // Search thread count supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        searchThreads = Math.max(1, Integer.parseInt(args[i]));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad number of search threads");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-movebudget"))
+                if (++i >= args.length) { // Time per move supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        moveBudget = parse_time(args[i]);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad move budget");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-rollouts"))
+                if (++i >= args.length) { // Rollouts per move supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        rollouts = Math.max(1, Integer.parseInt(args[i]));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad number of rollouts");
+                        usage();
+                        return;
+                    }
+            else if (args[i].equals("-guessnodes"))
+                if (++i >= args.length) { // Nodes per guess supplied
+                    usage();
+                    return;
+                } else
+                    try {
+                        guessNodes = Math.max(1, Long.parseLong(args[i]));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Bad number of nodes");
+                        usage();
+                        return;
+                    }
             else {
                 usage();
                 return;
             }
 
-        Strategy s;
-        try {
-            s = (Strategy) Class.forName(strategy_name).newInstance();
-        } catch (Exception e) {
+        Strategy s = new_strategy(strategy_name);
+        if (s == null) {
             System.out.println("Cannot create strategy " + strategy_name);
             usage();
             return;
         }
 
-        actionHistory3x3.loadFromCsv("action_history_3x3.csv");
+        if (new java.io.File(HISTORY_3X3_BIN).exists()
+                || new java.io.File(HISTORY_3X3_BIN + ".journal").exists())
+            actionHistory3x3.restore(HISTORY_3X3_BIN);
+        else if (new java.io.File(HISTORY_3X3_CSV).exists())
+            actionHistory3x3.loadFromCsv(HISTORY_3X3_CSV);
         //actionHistory5x5.loadFromCsv("action_history_5x5.csv");
         //actionHistory8x8.loadFromCsv("action_history_8x8.csv");
 
@@ -170,20 +309,144 @@ public class PGMS extends Applet {
         }
 
         System.out.print("Playing " + tries + " " + game_name + " games");
+        if (threads > 1)
+            System.out.print(" on " + threads + " threads");
         System.out.println(" using strategy " + strategy_name);
 
-        //int states3x3 = actionHistory3x3.actionResultList.size();
-        //int states5x5 = actionHistory5x5.actionResultList.size();
-
         isSingleRun = false;
 
-        for (int n = 1; n <= tries; n++) {
-            Map m = new MineMap(mines, rows, columns); // Create mine map
+        play_games(s, strategy_name, threads, tries,
+                   new Game(mines, rows, columns, seed, bitboard));
+
+        if (stats && s.stats() != null)
+            System.out.println(s.stats());
+
+        actionHistory3x3.checkpoint(HISTORY_3X3_BIN);
+        actionHistory3x3.awaitCompaction();
+        if (csv)
+            actionHistory3x3.saveToCsv(HISTORY_3X3_CSV);
+        // actionHistory5x5.saveToCsv("action_history_5x5.csv");
+    }
+
+    /**
+     * Create a strategy from its class name.
+     *
+     * @return the strategy, or null if it cannot be created
+     */
+    private static Strategy new_strategy(String strategy_name) {
+        try {
+            return (Strategy) Class.forName(strategy_name).newInstance();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Play a batch of games, spreading them over the given number of
+     * threads.  Each thread gets its own instance of the strategy.
+     */
+    private static void play_games(Strategy s, String strategy_name,
+                                   int threads, int tries, Game game) {
+        Tally tally = new Tally();
+        if (threads == 1) {
+            for (int n = 0; n < tries; n++) {
+                Map m = game.new_map(n); // Create mine map
+                play(s, m);
+                tally.record(m);
+            }
+            return;
+        }
+
+        Thread workers[] = new Thread[threads];
+        AtomicInteger next = new AtomicInteger();
+        for (int k = 0; k < threads; k++) {
+            Strategy ws = new_strategy(strategy_name); // One per worker
+            workers[k] = new Thread(new Runnable() {
+                public void run() {
+                    for (int n; (n = next.getAndIncrement()) < tries; ) {
+                        Map m = game.new_map(n);
+                        play(ws, m);
+                        tally.record(m);
+                    }
+                }
+            }, "PGMS-" + k);
+            workers[k].start();
+        }
+        for (int k = 0; k < threads; k++)
             try {
-                s.play(m);            // Play game
-            } catch (Exception e) {
-                System.out.println(e.toString());
+                workers[k].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
+    }
+
+    private static void play(Strategy s, Map m) {
+        try {
+            s.play(m);            // Play game
+        } catch (Exception e) {
+            System.out.println(e.toString());
+        }
+    }
+
+    /**
+     * The parameters of the games in a batch.  When a seed is given,
+     * the map for game n depends only on the seed and n, so a batch
+     * has the same results no matter how many threads play it.
+     */
+    private static class Game {
+        private final int mines;
+        private final int rows;
+        private final int columns;
+        private final Long seed;
+        private final boolean bitboard;
+
+        Game(int mines, int rows, int columns, Long seed, boolean bitboard) {
+            this.mines = mines;
+            this.rows = rows;
+            this.columns = columns;
+            this.seed = seed;
+            this.bitboard = bitboard;
+        }
+
+        Map new_map(int n) {
+            if (seed == null)
+                if (bitboard)
+                    return new BitboardMineMap(mines, rows, columns);
+                else
+                    return new MineMap(mines, rows, columns);
+            else if (bitboard)
+                return new BitboardMineMap(mines, rows, columns,
+                                           game_seed(seed, n));
+            else
+                return new MineMap(mines, rows, columns, game_seed(seed, n));
+        }
+
+        /* Mix the master seed with the game number using the
+         * SplitMix64 finalizer, so nearby games get unrelated maps. */
+        private static long game_seed(long seed, int n) {
+            long z = seed + (n + 1) * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Running totals for a batch of games.  Games may finish out of
+     * order when played on several threads, so the totals are only
+     * changed while holding the lock, and progress is reported for
+     * every hundredth game to finish.
+     */
+    private static class Tally {
+        private int n = 0;
+        private int wins = 0;
+        private int probed = 0;
+        private int SumRevealed = 0;
+        private int boardSizeSum = 0;
+
+        synchronized void record(Map m) {
+            n++;
             if (m.won()) wins++;    // Record results
             if (m.probed()) probed++;
 
@@ -200,20 +463,13 @@ public class PGMS extends Applet {
                         System.out.printf(", with Average Board reveal: %.2f%%", percent(SumRevealed, boardSizeSum));
                 }
                 System.out.println(".");
-                //System.out.print("New 3x3 states: " + (actionHistory3x3.actionResultList.size() - states3x3));
-                //System.out.println(" -- New 5x5 states: " + (actionHistory5x5.actionResultList.size() - states5x5));
-                //states3x3 = actionHistory3x3.actionResultList.size();
-                //states5x5 = actionHistory5x5.actionResultList.size();
             }
 
             if(n % 1000 == 0){
-                actionHistory3x3.saveToCsv("action_history_3x3.csv");
+                actionHistory3x3.checkpoint(HISTORY_3X3_BIN);
                 // actionHistory5x5.saveToCsv("action_history_5x5.csv");
             }
         }
-
-        actionHistory3x3.saveToCsv("action_history_3x3.csv");
-        // actionHistory5x5.saveToCsv("action_history_5x5.csv");
     }
 
     /**
@@ -226,13 +482,41 @@ public class PGMS extends Applet {
         this.columns = columns;
     }
 
+    /**
+     * Parse a time such as <code>5ms</code>, with a unit of
+     * <code>ns</code>, <code>us</code>, <code>ms</code> or <code>s</code>,
+     * or milliseconds if there is none.
+     *
+     * @return the time in nanoseconds
+     */
+    private static long parse_time(String s) {
+        long unit = 1000000;
+        if (s.endsWith("ns")) {
+            unit = 1;
+            s = s.substring(0, s.length() - 2);
+        } else if (s.endsWith("us")) {
+            unit = 1000;
+            s = s.substring(0, s.length() - 2);
+        } else if (s.endsWith("ms")) {
+            s = s.substring(0, s.length() - 2);
+        } else if (s.endsWith("s")) {
+            unit = 1000000000;
+            s = s.substring(0, s.length() - 1);
+        }
+        return Math.max(0, Math.round(Double.parseDouble(s) * unit));
+    }
+
     private static float percent(int n, int d) {
         return (float) (200 * n + d) / (2 * d);
     }
 
     private static void usage() {
         System.out.println("Usage: java PGMS [-b] [-i] [-e]"
-                + " [-s strategy_name] [-n number_of_games]");
+                + " [-s strategy_name] [-n number_of_games]"
+                + " [-j number_of_threads] [-seed seed]"
+                + " [-depth depth] [-forkjoin number_of_threads]"
+                + " [-movebudget time] [-rollouts number_of_games]"
+                + " [-guessnodes number_of_nodes] [-bitboard] [-csv] [-stats]");
         System.out.println("Beginner:     -b");
         System.out.println("Intermediate: -i");
         System.out.println("Expert:       -e");
@@ -275,11 +559,9 @@ public class PGMS extends Applet {
             strategy_name = default_strategy_name;
 
         // Create strategy
-        try {
-            s = (Strategy) Class.forName(strategy_name).newInstance();
-        } catch (Exception e) {
+        s = new_strategy(strategy_name);
+        if (s == null)
             return;
-        }
 
         if (game != null) {        // Set game level
             if (game.equals("intermediate")) {
@@ -36,4 +36,13 @@ public interface Strategy {
    * @param m		the map of mines
    */
   void play(Map m);
+
+  /**
+   * Describes the games this strategy has played, in one line
+   * printed after a batch of games when <code>-stats</code> is given.
+   * @return		the line, or null if there is nothing to say
+   */
+  default String stats() {
+    return null;
+  }
 }
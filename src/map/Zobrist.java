@@ -0,0 +1,71 @@
+package map;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+/**
+ * Zobrist hashing of what can be seen of a board.  Every pair of a cell
+ * and a value that look can return for it has a random 64-bit key, and
+ * the hash of a board is the exclusive or of the keys of its cells.
+ * When a cell changes from one value to another, the hash changes by
+ * the exclusive or of the two keys, so a map can keep its hash up to
+ * date at constant cost.
+ * <p>
+ * The keys are computed from the cell and value rather than stored in
+ * a table, so boards of any size can be hashed.  The key of an
+ * unprobed cell is zero, so the hash of a new board is zero.
+ *
+ * @see Map#zobrist
+ */
+public final class Zobrist {
+
+    private Zobrist() {
+    }
+
+    /**
+     * The key of a cell holding a value.
+     *
+     * @param k     the cell number, such as <code>y * columns + x</code>
+     * @param value a value returned by look, from
+     *              <code>Map.OUT_OF_BOUNDS</code> to 8
+     * @return the key
+     */
+    public static long key(int k, int value) {
+        if (value == Map.UNPROBED)
+            return 0;
+        long z = ((long) k << 4 | (value - Map.OUT_OF_BOUNDS))
+                + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;    // SplitMix64
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The hash of a map, computed by looking at every cell.  Cell
+     * (x, y) is numbered <code>y * columns + x</code>.
+     */
+    public static long hash(Map m) {
+        int r = m.rows();
+        int c = m.columns();
+        long h = 0;
+        for (int y = 0; y < r; y++)
+            for (int x = 0; x < c; x++)
+                h ^= key(y * c + x, m.look(x, y));
+        return h;
+    }
+}
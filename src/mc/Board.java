@@ -0,0 +1,147 @@
+package mc;
+
+import map.Map;
+import map.MapListener;
+
+import java.util.Arrays;
+
+/**
+ * What a strategy can see of a mine map, with the neighbours of every
+ * cell worked out in advance.  Cell (x, y) is numbered
+ * <code>y * columns + x</code>.  A board can listen to its map, and so
+ * keep up with it without looking at every cell after each move.
+ */
+final class Board implements MapListener {
+
+    final int rows;
+    final int columns;
+    final int cells;
+    final int[][] neighbours;   // In-bounds neighbours of each cell
+    final int[] look;           // Value look returns for each cell
+    int mines;                  // Mines on the map, marked or not
+
+    private final double[] logFactorial;
+
+    Board(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        cells = rows * columns;
+        neighbours = new int[cells][];
+        int[] around = new int[8];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                int n = 0;
+                for (int j = y - 1; j <= y + 1; j++) {
+                    for (int i = x - 1; i <= x + 1; i++) {
+                        if ((i != x || j != y) && i >= 0 && i < columns && j >= 0 && j < rows) {
+                            around[n++] = j * columns + i;
+                        }
+                    }
+                }
+                neighbours[y * columns + x] = Arrays.copyOf(around, n);
+            }
+        }
+        look = new int[cells];
+        logFactorial = new double[cells + 1];
+        for (int n = 1; n <= cells; n++) {
+            logFactorial[n] = logFactorial[n - 1] + Math.log(n);
+        }
+    }
+
+    /**
+     * Look at every cell of a map.
+     */
+    void read(Map m) {
+        int marked = 0;
+        for (int k = 0; k < cells; k++) {
+            look[k] = m.look(k % columns, k / columns);
+            if (look[k] == Map.MARKED) {
+                marked++;
+            }
+        }
+        mines = m.mines_minus_marks() + marked;
+    }
+
+    /**
+     * Look at every cell of a map, and then listen to it if it can be
+     * listened to.
+     *
+     * @return true if the board is listening, false if it must read
+     *         the map again after each move
+     */
+    boolean follow(Map m) {
+        read(m);
+        return m.addListener(this);
+    }
+
+    public void revealed(int x, int y, int value) {
+        look[y * columns + x] = value;
+    }
+
+    public void marked(int x, int y) {
+        look[y * columns + x] = Map.MARKED;
+    }
+
+    public void unmarked(int x, int y) {
+        look[y * columns + x] = Map.UNPROBED;
+    }
+
+    /**
+     * Is cell k showing a number with an unprobed neighbour?
+     */
+    boolean open(int k) {
+        if (look[k] < 0) {
+            return false;
+        }
+        for (int n : neighbours[k]) {
+            if (look[n] == Map.UNPROBED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Probe the unprobed neighbours of cells whose mines are all marked,
+     * and mark the unprobed neighbours of cells that need them all to be
+     * mines.
+     *
+     * @return true if the map was changed
+     */
+    boolean settle(Map m) {
+        boolean changed = false;
+        for (int k = 0; k < cells && !m.done(); k++) {
+            if (!open(k)) {
+                continue;
+            }
+            int unprobed = 0;
+            int marked = 0;
+            for (int n : neighbours[k]) {
+                if (look[n] == Map.UNPROBED) {
+                    unprobed++;
+                } else if (look[n] == Map.MARKED) {
+                    marked++;
+                }
+            }
+            if (look[k] == marked || look[k] - marked == unprobed) {
+                boolean mine = look[k] != marked;
+                for (int n : neighbours[k]) {
+                    if (look[n] == Map.UNPROBED) {
+                        int x = n % columns;
+                        int y = n / columns;
+                        look[n] = mine ? m.mark(x, y) : m.probe(x, y);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * The natural log of the number of ways to choose k of n things.
+     */
+    double logChoose(int n, int k) {
+        return logFactorial[n] - logFactorial[k] - logFactorial[n - k];
+    }
+}
@@ -0,0 +1,199 @@
+package mc;
+
+import map.Map;
+import map.PGMS;
+import map.Strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo strategy.  Cells that the single point rules settle are
+ * probed or marked at once.  Otherwise each unprobed cell next to a
+ * number, and one cell away from them, is a candidate.  Mine layouts
+ * consistent with the board are drawn, the rest of the game is played
+ * out against each layout starting from each candidate, and the
+ * candidate that wins most often is probed.
+ * <p>
+ * PGMS.rollouts sets how many games are played out for each move, and
+ * so trades win rate against time per move.  Layouts are played out on
+ * PGMS.searchThreads threads.  Each layout has its own random numbers,
+ * derived from the map, so the moves chosen do not depend on the number
+ * of threads.
+ */
+public final class MonteCarloStrategy implements Strategy {
+
+    /* Threads playing out layouts, shared by all instances */
+    private static ForkJoinPool pool;
+
+    /**
+     * Invoke the Monte Carlo strategy.
+     *
+     * @see Strategy
+     */
+    public void play(Map m) {
+        Board b = new Board(m.rows(), m.columns());
+        boolean listening = b.follow(m);
+        while (!m.done()) {
+            if (!listening) {
+                b.read(m);
+            }
+            if (!b.settle(m)) {
+                int k = choose(m, b);
+                m.probe(k % b.columns, k / b.columns);
+            }
+        }
+        if (listening) {
+            m.removeListener(b);
+        }
+    }
+
+    /*
+     * The candidate with the most wins, weighting each layout by how
+     * likely it is.  Ties go to the candidate least likely to be a mine,
+     * then to the first.
+     */
+    private int choose(Map m, Board b) {
+        Sampler sampler = new Sampler(b);
+        int[] frontier = sampler.frontier();
+        int[] interior = sampler.interior();
+        int n = frontier.length + (interior.length > 0 ? 1 : 0);
+        int[] candidates = Arrays.copyOf(frontier, n);
+        if (interior.length > 0) {
+            candidates[n - 1] = corner(b, interior);
+        }
+        if (n == 1) {
+            return candidates[0];
+        }
+        int layouts = Math.max(1, (PGMS.rollouts + n - 1) / n);
+        long seed = (long) m.pick(1 << 30) << 30 | m.pick(1 << 30);
+        Outcome[] outcomes = new Outcome[layouts];
+        if (PGMS.searchThreads > 1) {
+            ArrayList<ForkJoinTask<Outcome>> tasks = new ArrayList<ForkJoinTask<Outcome>>();
+            for (int s = 0; s < layouts; s++) {
+                tasks.add(pool().submit(new Layout(b, sampler, candidates, seed + s)));
+            }
+            for (int s = 0; s < layouts; s++) {
+                outcomes[s] = tasks.get(s).join();
+            }
+        } else {
+            Rollout rollout = new Rollout(b);
+            for (int s = 0; s < layouts; s++) {
+                outcomes[s] = new Layout(b, sampler, candidates, seed + s).play(rollout);
+            }
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (Outcome o : outcomes) {
+            if (o != null) {
+                max = Math.max(max, o.weight);
+            }
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return candidates[m.pick(n)];       // No layout found
+        }
+        double[] wins = new double[n];
+        double[] safe = new double[n];
+        for (Outcome o : outcomes) {
+            if (o == null) {
+                continue;
+            }
+            double w = Math.exp(o.weight - max);
+            for (int c = 0; c < n; c++) {
+                if (!o.mine[c]) {
+                    safe[c] += w;
+                    if (o.won[c]) {
+                        wins[c] += w;
+                    }
+                }
+            }
+        }
+        int best = 0;
+        for (int c = 1; c < n; c++) {
+            if (wins[c] > wins[best] || (wins[c] == wins[best] && safe[c] > safe[best])) {
+                best = c;
+            }
+        }
+        return candidates[best];
+    }
+
+    /*
+     * The interior cell with the fewest neighbours, which is the most
+     * likely to open up the board
+     */
+    private static int corner(Board b, int[] interior) {
+        int best = interior[0];
+        for (int k : interior) {
+            if (b.neighbours[k].length < b.neighbours[best].length) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /*
+     * What happened to each candidate against one layout
+     */
+    private static final class Outcome {
+        final double weight;    // Log of the weight of the layout
+        final boolean[] mine;   // mine[c] if candidate c has a mine
+        final boolean[] won;    // won[c] if the game starting at c was won
+
+        Outcome(double weight, int n) {
+            this.weight = weight;
+            mine = new boolean[n];
+            won = new boolean[n];
+        }
+    }
+
+    /*
+     * Draw one layout and play it out from every candidate
+     */
+    private static final class Layout extends RecursiveTask<Outcome> {
+        private static final long serialVersionUID = 1L;
+        private final Board b;
+        private final Sampler sampler;
+        private final int[] candidates;
+        private final long seed;
+
+        Layout(Board b, Sampler sampler, int[] candidates, long seed) {
+            this.b = b;
+            this.sampler = sampler;
+            this.candidates = candidates;
+            this.seed = seed;
+        }
+
+        protected Outcome compute() {
+            return play(new Rollout(b));
+        }
+
+        Outcome play(Rollout rollout) {
+            SplittableRandom rng = new SplittableRandom(seed);
+            boolean[] mine = new boolean[b.cells];
+            double weight = Double.NaN;
+            for (int tries = 0; tries < 3 && Double.isNaN(weight); tries++) {
+                weight = sampler.sample(rng, mine);
+            }
+            if (Double.isNaN(weight)) {
+                return null;
+            }
+            Outcome o = new Outcome(weight, candidates.length);
+            for (int c = 0; c < candidates.length; c++) {
+                o.mine[c] = mine[candidates[c]];
+                o.won[c] = !o.mine[c] && rollout.play(mine, candidates[c], rng);
+            }
+            return o;
+        }
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(PGMS.searchThreads);
+        }
+        return pool;
+    }
+}
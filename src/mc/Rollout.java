@@ -0,0 +1,151 @@
+package mc;
+
+import map.Map;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays out the rest of a game on a copy of a board, against a mine
+ * layout drawn by a Sampler.  The player is a fast single point solver:
+ * it probes around numbers whose mines are all marked, marks around
+ * numbers that need all their unprobed neighbours to be mines, and
+ * guesses at random when neither applies.  A rollout reuses its arrays
+ * from one game to the next, so each thread needs its own.
+ */
+final class Rollout {
+
+    private final Board b;
+    private final int[] state;          // Copy of Board.look being played
+    private final int[] stack;          // Numbered cells to look at again
+    private final boolean[] queued;     // queued[k] if k is on the stack
+    private int top;
+    private int safe;                   // Unprobed cells without mines
+
+    Rollout(Board b) {
+        this.b = b;
+        state = new int[b.cells];
+        stack = new int[b.cells];
+        queued = new boolean[b.cells];
+    }
+
+    /**
+     * Play a game starting with a probe.
+     *
+     * @param mine  the layout played against
+     * @param first the cell probed first
+     * @param rng   the source of guesses
+     * @return true if the game is won
+     */
+    boolean play(boolean[] mine, int first, SplittableRandom rng) {
+        System.arraycopy(b.look, 0, state, 0, b.cells);
+        safe = 0;
+        for (int k = 0; k < b.cells; k++) {
+            if (state[k] == Map.UNPROBED && !mine[k]) {
+                safe++;
+            }
+        }
+        top = 0;
+        int probe = first;
+        while (!mine[probe]) {
+            reveal(probe, mine);
+            if (!solve(mine)) {
+                clear();
+                return false;
+            }
+            if (safe == 0) {
+                return true;
+            }
+            probe = guess(rng);
+        }
+        clear();
+        return false;
+    }
+
+    // Apply the single point rules until they run out
+    private boolean solve(boolean[] mine) {
+        while (top > 0) {
+            int k = stack[--top];
+            queued[k] = false;
+            int unprobed = 0;
+            int marked = 0;
+            for (int n : b.neighbours[k]) {
+                if (state[n] == Map.UNPROBED) {
+                    unprobed++;
+                } else if (state[n] == Map.MARKED) {
+                    marked++;
+                }
+            }
+            if (unprobed == 0) {
+                continue;
+            }
+            if (state[k] == marked) {
+                for (int n : b.neighbours[k]) {
+                    if (state[n] == Map.UNPROBED) {
+                        if (mine[n]) {
+                            return false;       // Only if marks were wrong
+                        }
+                        reveal(n, mine);
+                    }
+                }
+            } else if (state[k] - marked == unprobed) {
+                for (int n : b.neighbours[k]) {
+                    if (state[n] == Map.UNPROBED) {
+                        state[n] = Map.MARKED;
+                        push(b.neighbours[n]);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void reveal(int k, boolean[] mine) {
+        int count = 0;
+        for (int n : b.neighbours[k]) {
+            if (mine[n]) {
+                count++;
+            }
+        }
+        state[k] = count;
+        safe--;
+        push(k);
+        push(b.neighbours[k]);
+    }
+
+    // A random unprobed cell
+    private int guess(SplittableRandom rng) {
+        int unprobed = 0;
+        for (int k = 0; k < b.cells; k++) {
+            if (state[k] == Map.UNPROBED) {
+                unprobed++;
+            }
+        }
+        int i = rng.nextInt(unprobed);
+        for (int k = 0; ; k++) {
+            if (state[k] == Map.UNPROBED && i-- == 0) {
+                return k;
+            }
+        }
+    }
+
+    private void push(int[] cells) {
+        for (int k : cells) {
+            if (state[k] >= 0) {
+                push(k);
+            }
+        }
+    }
+
+    private void push(int k) {
+        if (!queued[k]) {
+            queued[k] = true;
+            stack[top++] = k;
+        }
+    }
+
+    private void clear() {
+        while (top > 0) {
+            queued[stack[--top]] = false;
+        }
+    }
+}
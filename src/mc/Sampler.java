@@ -0,0 +1,195 @@
+package mc;
+
+import map.Map;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws mine layouts consistent with what can be seen of a board.
+ * <p>
+ * Unprobed cells next to a number make up the frontier, and the rest
+ * make up the interior.  A layout is drawn by assigning the frontier
+ * cells one at a time, starting again whenever a number can no longer
+ * be satisfied, and then scattering the remaining mines over the
+ * interior.  Marked cells are taken to be mines.
+ * <p>
+ * Each layout comes with a weight, for importance sampling: the number
+ * of ways to complete its frontier over the interior, divided by the
+ * probability of the choices that drew the frontier.  Weighted by it,
+ * every consistent layout counts equally.  A sampler never changes
+ * after it is made, so threads may share it.
+ */
+final class Sampler {
+
+    /* Attempts at a layout before giving up */
+    private static final int TRIES = 1000;
+
+    /* Least probability given to either value of a free cell */
+    private static final double MIN_P = 0.05;
+
+    private final Board b;
+    private final int[] frontier;       // Frontier cells, near each other in turn
+    private final int[] interior;       // Other unprobed cells
+    private final int[][] numbers;      // Numbered cells next to each frontier cell
+    private final int[] need;           // Unmarked mines next to each numbered cell
+    private final int[] open;           // Frontier cells next to each numbered cell
+    private final int mines;            // Mines not marked
+
+    Sampler(Board b) {
+        this.b = b;
+        need = new int[b.cells];
+        open = new int[b.cells];
+        boolean[] seen = new boolean[b.cells];
+        int[] f = new int[b.cells];
+        int size = 0;
+        int marked = 0;
+        for (int k = 0; k < b.cells; k++) {
+            if (b.look[k] == Map.MARKED) {
+                marked++;
+            }
+            if (!b.open(k)) {
+                continue;
+            }
+            need[k] = b.look[k];
+            for (int n : b.neighbours[k]) {
+                if (b.look[n] == Map.MARKED) {
+                    need[k]--;
+                } else if (b.look[n] == Map.UNPROBED) {
+                    open[k]++;
+                    if (!seen[n]) {
+                        seen[n] = true;
+                        f[size++] = n;
+                    }
+                }
+            }
+        }
+        frontier = Arrays.copyOf(f, size);
+        numbers = new int[size][];
+        int[] around = new int[8];
+        for (int i = 0; i < size; i++) {
+            int count = 0;
+            for (int n : b.neighbours[frontier[i]]) {
+                if (b.open(n)) {
+                    around[count++] = n;
+                }
+            }
+            numbers[i] = Arrays.copyOf(around, count);
+        }
+        int count = 0;
+        for (int k = 0; k < b.cells; k++) {
+            if (b.look[k] == Map.UNPROBED && !seen[k]) {
+                f[count++] = k;
+            }
+        }
+        interior = Arrays.copyOf(f, count);
+        mines = b.mines - marked;
+    }
+
+    /**
+     * The frontier cells.
+     */
+    int[] frontier() {
+        return frontier;
+    }
+
+    /**
+     * The unprobed cells that are not on the frontier.
+     */
+    int[] interior() {
+        return interior;
+    }
+
+    /**
+     * Draw a layout.
+     *
+     * @param rng  the source of randomness
+     * @param mine set to true for each cell with a mine, marked cells
+     *             included
+     * @return the log of the weight of the layout, or NaN if none
+     *         was found
+     */
+    double sample(SplittableRandom rng, boolean[] mine) {
+        for (int t = 0; t < TRIES; t++) {
+            Arrays.fill(mine, false);
+            double q = frontier(rng, mine);
+            if (Double.isNaN(q)) {
+                continue;
+            }
+            int used = 0;
+            for (int k : frontier) {
+                if (mine[k]) {
+                    used++;
+                }
+            }
+            int rest = mines - used;
+            if (rest < 0 || rest > interior.length) {
+                continue;
+            }
+            int[] cells = interior.clone();
+            for (int i = 0; i < rest; i++) {   // Partial Fisher-Yates shuffle
+                int j = i + rng.nextInt(cells.length - i);
+                int k = cells[j];
+                cells[j] = cells[i];
+                cells[i] = k;
+                mine[k] = true;
+            }
+            for (int k = 0; k < b.cells; k++) {
+                if (b.look[k] == Map.MARKED) {
+                    mine[k] = true;
+                }
+            }
+            return b.logChoose(interior.length, rest) - q;
+        }
+        return Double.NaN;
+    }
+
+    /*
+     * Assign the frontier in one pass.  Where both values keep every
+     * number satisfiable, a mine is chosen with the probability suggested
+     * by the neighbouring number with the fewest cells left to assign,
+     * which keeps the weights close to one another.  Returns the log of the
+     * probability of the choices made, or NaN at a dead end.
+     */
+    private double frontier(SplittableRandom rng, boolean[] mine) {
+        int[] placed = new int[b.cells];
+        int[] left = open.clone();
+        int used = 0;
+        double q = 0;
+        for (int i = 0; i < frontier.length; i++) {
+            boolean mineOk = used < mines;
+            boolean safeOk = true;
+            double p = 0;
+            int fewest = Integer.MAX_VALUE;
+            for (int n : numbers[i]) {
+                if (placed[n] + 1 > need[n]) {
+                    mineOk = false;
+                }
+                if (placed[n] + left[n] - 1 < need[n]) {
+                    safeOk = false;
+                }
+                if (left[n] < fewest) {
+                    fewest = left[n];
+                    p = (double) (need[n] - placed[n]) / left[n];
+                }
+            }
+            boolean m;
+            if (mineOk && safeOk) {
+                p = Math.max(MIN_P, Math.min(1 - MIN_P, p));
+                m = rng.nextDouble() < p;
+                q += Math.log(m ? p : 1 - p);
+            } else if (mineOk || safeOk) {
+                m = mineOk;
+            } else {
+                return Double.NaN;
+            }
+            mine[frontier[i]] = m;
+            for (int n : numbers[i]) {
+                placed[n] += m ? 1 : 0;
+                left[n]--;
+            }
+            used += m ? 1 : 0;
+        }
+        return q;
+    }
+}
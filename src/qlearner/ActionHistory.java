@@ -4,20 +4,78 @@ import map.Map;
 import state.LocalState;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by chewb on 3/23/2017.
  */
 public class ActionHistory {
 
-    public List<ActionResult> actionResultList = new ArrayList<>();
-    private List<ActionResult> newActionsSinceLastSave = new ArrayList<>();
+    /*
+     * Binary file format, big-endian:
+     *
+     *   int magic, int version, int localStateSize, byte local,
+     *   long generation, int entries
+     *
+     * then for each entry
+     *
+     *   int x, int y, int count, int bombed, int empty, int marked,
+     *   long state[(localStateSize * localStateSize + 15) / 16]
+     *
+     * The state is packed four bits to a cell, row by row, cell k in
+     * bits 4 * (k % 16) of word k / 16, each holding the cell value
+     * minus Map.OUT_OF_BOUNDS.  Version 1 files have no generation.
+     *
+     * A checkpoint appends to a journal beside the binary file:
+     *
+     *   int journal magic, int version, int localStateSize, byte local,
+     *   long generation
+     *
+     * followed by entries as above, each holding the counters of its
+     * state when it was written, so the last entry for a state wins.
+     * Compaction renames the journal to the old journal, starts a new
+     * generation, writes a snapshot of that generation and deletes the
+     * old journal.  A journal is replayed only if its generation is not
+     * less than that of the snapshot, so after a crash the snapshot,
+     * the old journal and the journal are read in that order.
+     */
+    private static final int MAGIC = 0x50474d51;  // "PGMQ"
+    private static final int JOURNAL_MAGIC = 0x50474d4a;  // "PGMJ"
+    private static final int VERSION = 2;
+    private static final int V1_HEADER_BYTES = 4 * 4 + 1;
+    private static final int HEADER_BYTES = 4 * 4 + 1 + 8;
+    private static final int JOURNAL_HEADER_BYTES = 3 * 4 + 1 + 8;
+    private static final String JOURNAL = ".journal";
+    private static final String OLD_JOURNAL = ".journal.old";
+    // Smallest journal worth compacting
+    private static final long MIN_COMPACTION_BYTES = 1 << 16;
+
+    // Iterate only while holding its lock
+    public List<ActionResult> actionResultList = Collections.synchronizedList(new ArrayList<>());
+    // Entries that are new or have changed since the last checkpoint
+    private Set<ActionResult> changed = ConcurrentHashMap.newKeySet();
+    // Generation of the journal written by checkpoint
+    private long generation = 0;
+    // Whether the snapshot and journals on disk hold the whole table, as
+    // they do after restore; if not, checkpoint starts with a snapshot
+    private boolean onDisk = false;
+    private Thread compactor;
+    // Local states are found by their index key, a Long for 3x3 states and
+    // a StateKey for larger ones; others by a scan of the list
+    private ConcurrentHashMap<Object, ActionResult> index = new ConcurrentHashMap<>();
     public int localStateSize;
     public boolean local;
 
@@ -27,39 +85,65 @@ public class ActionHistory {
     }
 
     public ActionResult getExistingAction(Map m, int x, int y){
-        ActionResult actionResult = new ActionResult(m, x, y, localStateSize, local);
-
-        for(ActionResult a : actionResultList){
-            if(a.equals(actionResult)){
-                return a;
-            }
+        if(local){
+            return index.get(StateKey.indexKey(m, x, y, localStateSize));
         }
 
-        return null;
+        return find(new ActionResult(m, x, y, localStateSize, local));
     }
 
-    public void saveAction(Map m, int x, int y, int result, boolean debugLog){
+    private ActionResult find(ActionResult actionResult){
+        if(local){
+            return index.get(actionResult.key());
+        }
 
-        ActionResult actionResult = new ActionResult(m, x, y, localStateSize, local);
+        synchronized(actionResultList){
+            for(ActionResult a : actionResultList){
+                if(a.equals(actionResult)){
+                    return a;
+                }
+            }
+        }
 
-        boolean foundExisiting = false;
+        return null;
+    }
 
-        for(ActionResult a : actionResultList){
-            if(a.equals(actionResult)){
-                actionResult = a;
-                actionResult.count++;
-                foundExisiting = true;
-                break;
+    /*
+     * Return the entry for the state of actionResult, adding
+     * actionResult if there is none.  When two games add the same
+     * state at once, one entry wins and both get it.
+     */
+    private ActionResult findOrAdd(ActionResult actionResult){
+        if(local){
+            ActionResult existing = index.putIfAbsent(actionResult.key(), actionResult);
+            if(existing != null){
+                return existing;
             }
+            actionResultList.add(actionResult);
+            return actionResult;
         }
 
-        if(result == m.BOOM){
-            actionResult.bombed++;
-        } else if(result == m.MARKED){
-            actionResult.marked++;
-        } else {
-            actionResult.empty++;
+        synchronized(actionResultList){
+            ActionResult existing = find(actionResult);
+            if(existing != null){
+                return existing;
+            }
+            actionResultList.add(actionResult);
+            return actionResult;
         }
+    }
+
+    private void add(ActionResult actionResult){
+        findOrAdd(actionResult);
+    }
+
+    public void saveAction(Map m, int x, int y, int result, boolean debugLog){
+
+        ActionResult actionResult = new ActionResult(m, x, y, localStateSize, local);
+        actionResult.count = 0;
+
+        actionResult = findOrAdd(actionResult);
+        actionResult.record(result);
 
         if(debugLog){
             System.out.print("Saving State after selecting (" + x + ", " + y + ") with result (" + result + ")...");
@@ -75,27 +159,27 @@ public class ActionHistory {
             System.out.println();
         }
 
-        if(!foundExisiting){
-            actionResultList.add(actionResult);
-            newActionsSinceLastSave.add(actionResult);
-        }
+        changed.add(actionResult);
     }
 
     public void saveToCsv(String filename){
-        try (PrintStream out = new PrintStream(new FileOutputStream(filename))) {
-            String headerStr = "x,y,bombed,empty,";
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            StringBuilder headerStr = new StringBuilder("x,y,bombed,empty,");
             for(int j = 0; j < localStateSize; j++){
                 for(int i = 0; i < localStateSize; i++){
-                    headerStr += j + " " + i + ",";
+                    headerStr.append(j).append(' ').append(i).append(',');
                 }
             }
             out.println(headerStr);
 
-            for(ActionResult a : actionResultList){
-                String rowStr = a.x + "," + a.y + "," + a.bombed + "," + a.empty + ",";
+            StringBuilder rowStr = new StringBuilder();
+            for(ActionResult a : new ArrayList<>(actionResultList)){
+                rowStr.setLength(0);
+                rowStr.append(a.x).append(',').append(a.y).append(',')
+                        .append(a.bombed).append(',').append(a.empty).append(',');
                 for(int j = 0; j < localStateSize; j++){
                     for(int i = 0; i < localStateSize; i++){
-                        rowStr += a.localState[j][i] + ",";
+                        rowStr.append(a.localState[j][i]).append(',');
                     }
                 }
                 out.println(rowStr);
@@ -105,6 +189,342 @@ public class ActionHistory {
         }
     }
 
+    /**
+     * Save the history in the binary format.  The file is written
+     * beside the old one and then renamed over it, so a crash while
+     * saving leaves the old file.
+     */
+    public void saveToBinary(String filename){
+        try {
+            writeSnapshot(filename, new ArrayList<>(actionResultList), generation);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Load a history saved by saveToBinary.  The file is mapped into
+     * memory rather than read through a stream.
+     */
+    public void loadFromBinary(String filename){
+        try {
+            readSnapshot(filename);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Load a history kept by checkpoint: the snapshot in the binary
+     * file, then the journals beside it.
+     */
+    public void restore(String filename){
+        try {
+            long snapshotGeneration = 0;
+            if(Files.exists(Paths.get(filename))){
+                snapshotGeneration = readSnapshot(filename);
+            }
+            generation = snapshotGeneration;
+            // A journal older than the snapshot is already in it
+            for(String journal : new String[] { filename + OLD_JOURNAL, filename + JOURNAL }){
+                if(Files.exists(Paths.get(journal))){
+                    long g = readJournal(journal, snapshotGeneration);
+                    generation = Math.max(generation, g);
+                }
+            }
+
+            Path oldJournal = Paths.get(filename + OLD_JOURNAL);
+            if(Files.exists(oldJournal)){
+                // A compaction did not finish, so finish it now
+                generation++;
+                writeSnapshot(filename, new ArrayList<>(actionResultList), generation);
+                Files.delete(oldJournal);
+                Files.deleteIfExists(Paths.get(filename + JOURNAL));
+            }
+            onDisk = true;
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Append the entries that are new or have changed since the last
+     * checkpoint to the journal of a binary file, and force them to
+     * disk.  When the journal has grown larger than the snapshot, a
+     * background thread writes a new snapshot and drops the journal.
+     * If the table was not restored from these files, say because it
+     * was loaded from CSV, the first checkpoint writes a snapshot of
+     * the whole table instead, as the journal alone would lose the
+     * entries that have not changed.
+     */
+    public void checkpoint(String filename){
+        Path journal = Paths.get(filename + JOURNAL);
+        try {
+            // An entry is taken out of changed before its counters are
+            // read, so a change made meanwhile goes in the next checkpoint
+            List<ActionResult> batch = new ArrayList<>();
+            for(Iterator<ActionResult> it = changed.iterator(); it.hasNext(); ){
+                batch.add(it.next());
+                it.remove();
+            }
+            if(!onDisk){
+                // The snapshot is copied after the batch was taken, so
+                // it holds the batch too
+                writeSnapshot(filename, new ArrayList<>(actionResultList), generation);
+                Files.deleteIfExists(journal);
+                Files.deleteIfExists(Paths.get(filename + OLD_JOURNAL));
+                onDisk = true;
+            } else if(!batch.isEmpty()){
+                int entryBytes = entryBytes();
+                ByteBuffer buf = ByteBuffer.allocate(JOURNAL_HEADER_BYTES + batch.size() * entryBytes);
+                try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    if(ch.size() < JOURNAL_HEADER_BYTES){
+                        ch.truncate(0);     // Nothing useful in a torn header
+                        buf.putInt(JOURNAL_MAGIC).putInt(VERSION).putInt(localStateSize)
+                                .put((byte) (local ? 1 : 0)).putLong(generation);
+                    }
+                    for(ActionResult a : batch){
+                        putEntry(buf, a);
+                    }
+                    buf.flip();
+                    while(buf.hasRemaining()){
+                        ch.write(buf);
+                    }
+                    ch.force(false);
+                }
+            }
+
+            Path snapshot = Paths.get(filename);
+            long snapshotBytes = Files.exists(snapshot) ? Files.size(snapshot) : 0;
+            if(Files.exists(journal) && Files.size(journal) > Math.max(snapshotBytes, MIN_COMPACTION_BYTES)){
+                compact(filename);
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Wait for a background compaction, if any, to finish.
+     */
+    public void awaitCompaction(){
+        Thread t = compactor;
+        if(t != null){
+            try {
+                t.join();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Start writing a new snapshot.  The journal is renamed so the next
+     * checkpoint starts a fresh one, and the entries are copied, which
+     * costs a pointer per entry.  Entries that change after the copy
+     * are in the fresh journal, which is replayed after the snapshot,
+     * so it does not matter whether the snapshot sees their changes.
+     */
+    private void compact(String filename) throws IOException {
+        Path journal = Paths.get(filename + JOURNAL);
+        Path oldJournal = Paths.get(filename + OLD_JOURNAL);
+        if(compactor != null && compactor.isAlive() || Files.exists(oldJournal)){
+            return;
+        }
+        Files.move(journal, oldJournal, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+
+        final List<ActionResult> entries = new ArrayList<>(actionResultList);
+        final long snapshotGeneration = generation;
+        compactor = new Thread(() -> {
+            try {
+                writeSnapshot(filename, entries, snapshotGeneration);
+                Files.deleteIfExists(oldJournal);
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }, "ActionHistory compaction");
+        compactor.start();
+    }
+
+    private void writeSnapshot(String filename, List<ActionResult> entries, long generation) throws IOException {
+        int n = entries.size();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + n * entryBytes());
+
+        buf.putInt(MAGIC).putInt(VERSION).putInt(localStateSize)
+                .put((byte) (local ? 1 : 0)).putLong(generation).putInt(n);
+        for(int e = 0; e < n; e++){
+            putEntry(buf, entries.get(e));
+        }
+        buf.flip();
+
+        Path path = Paths.get(filename);
+        Path tmp = Paths.get(filename + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(buf.hasRemaining()){
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns the generation of the snapshot
+    private long readSnapshot(String filename) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+
+            if(buf.remaining() < V1_HEADER_BYTES || buf.getInt() != MAGIC){
+                throw new IOException(filename + ": not an action history");
+            }
+            int version = readHeader(buf, filename);
+            long snapshotGeneration = version >= 2 ? buf.getLong() : 0;
+            int entries = buf.getInt();
+            if(buf.remaining() != (long) entries * entryBytes()){
+                throw new IOException(filename + ": bad length");
+            }
+
+            for(int e = 0; e < entries; e++){
+                getEntry(buf, false);
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    // Replays the journal if it is not older than the snapshot, and
+    // returns its generation.  The journal is read rather than mapped,
+    // so that a record torn by a crash can be cut off the end of it.
+    private long readJournal(String filename, long snapshotGeneration) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size());
+            while(buf.hasRemaining() && ch.read(buf) >= 0){
+            }
+            buf.flip();
+
+            if(buf.remaining() < JOURNAL_HEADER_BYTES){
+                return snapshotGeneration;      // Torn header; nothing in it
+            }
+            if(buf.getInt() != JOURNAL_MAGIC){
+                throw new IOException(filename + ": not an action history journal");
+            }
+            readHeader(buf, filename);
+            long journalGeneration = buf.getLong();
+            if(journalGeneration >= snapshotGeneration){
+                while(buf.remaining() >= entryBytes()){
+                    getEntry(buf, true);
+                }
+                if(buf.hasRemaining()){
+                    // Cut off a record torn by a crash, or the next checkpoint
+                    // would append after it and every later record would be misread
+                    ch.truncate(buf.position());
+                    ch.force(false);
+                }
+            }
+            return journalGeneration;
+        }
+    }
+
+    // Checks the version, state size and local flag; returns the version
+    private int readHeader(ByteBuffer buf, String filename) throws IOException {
+        int version = buf.getInt();
+        if(version < 1 || version > VERSION){
+            throw new IOException(filename + ": unknown version " + version);
+        }
+        int size = buf.getInt();
+        boolean fileLocal = buf.get() != 0;
+        if(size != localStateSize || fileLocal != local){
+            throw new IOException(filename + ": history of " + size + "x" + size
+                    + (fileLocal ? " local" : "") + " states");
+        }
+        return version;
+    }
+
+    private int stateWords(){
+        return (localStateSize * localStateSize + 15) / 16;
+    }
+
+    private int entryBytes(){
+        return 6 * 4 + stateWords() * 8;
+    }
+
+    private void putEntry(ByteBuffer buf, ActionResult a){
+        buf.putInt(a.x).putInt(a.y).putInt(a.count)
+                .putInt(a.bombed).putInt(a.empty).putInt(a.marked);
+        long[] state = new long[stateWords()];
+        int k = 0;
+        for(int j = 0; j < localStateSize; j++){
+            for(int i = 0; i < localStateSize; i++, k++){
+                state[k / 16] |= (long) ((a.localState[j][i] - Map.OUT_OF_BOUNDS) & 0xf) << (4 * (k % 16));
+            }
+        }
+        for(long w : state){
+            buf.putLong(w);
+        }
+    }
+
+    // Reads an entry and loads it, replacing the counters of an existing
+    // entry for the same state when replace is true, adding to them if not
+    private void getEntry(ByteBuffer buf, boolean replace){
+        int x = buf.getInt();
+        int y = buf.getInt();
+        int count = buf.getInt();
+        int bombed = buf.getInt();
+        int empty = buf.getInt();
+        int marked = buf.getInt();
+        long[] state = new long[stateWords()];
+        for(int w = 0; w < state.length; w++){
+            state[w] = buf.getLong();
+        }
+
+        int[][] states = new int[localStateSize][localStateSize];
+        int k = 0;
+        for(int j = 0; j < localStateSize; j++){
+            for(int i = 0; i < localStateSize; i++, k++){
+                states[j][i] = (int) (state[k / 16] >>> (4 * (k % 16)) & 0xf) + Map.OUT_OF_BOUNDS;
+            }
+        }
+
+        ActionResult existing = load(states, x, y, count, bombed, empty, marked);
+        if(replace && existing != null){
+            existing.count = count;
+            existing.bombed = bombed;
+            existing.empty = empty;
+            existing.marked = marked;
+        }
+    }
+
+    // Add a loaded entry, merging it with an entry for the same state,
+    // which is returned
+    private ActionResult load(int[][] states, int x, int y, int count, int bombed, int empty, int marked){
+        if(local){
+            // older files hold states as seen, not in canonical form
+            states = StateKey.canonical(states, localStateSize);
+        }
+
+        ActionResult actionResult = new ActionResult(states, x, y, localStateSize);
+
+        actionResult.local = local;
+        actionResult.count = count;
+        actionResult.bombed = bombed;
+        actionResult.empty = empty;
+        actionResult.marked = marked;
+
+        ActionResult existing = find(actionResult);
+        if(existing != null){
+            // merge rows for states that are symmetric
+            existing.count += count;
+            existing.bombed += bombed;
+            existing.empty += empty;
+            existing.marked += marked;
+        } else {
+            add(actionResult);
+        }
+        return existing;
+    }
+
     public void loadFromCsv(String filename){
         try  {
             BufferedReader br = new BufferedReader(new FileReader(filename));
@@ -128,13 +548,7 @@ public class ActionHistory {
                         }
                     }
 
-                    ActionResult actionResult = new ActionResult(states, x, y, localStateSize);
-
-                    actionResult.bombed = bombed;
-                    actionResult.empty = empty;
-                    actionResult.count = bombed + empty;
-
-                    actionResultList.add(actionResult);
+                    load(states, x, y, bombed + empty, bombed, empty, 0);
 
                     line = br.readLine();
                 }
@@ -2,6 +2,8 @@ package qlearner;
 
 import map.Map;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * Created by chewb on 3/23/2017.
  */
@@ -12,11 +14,21 @@ public class ActionResult {
     public int size;
     public int center;
     public int[][] localState;
-    public int count = 1;
-
-    public int marked = 0;
-    public int bombed = 0;
-    public int empty = 0;
+    // The counters may be updated by several games at once, through record
+    public volatile int count = 1;
+
+    public volatile int marked = 0;
+    public volatile int bombed = 0;
+    public volatile int empty = 0;
+
+    private static final AtomicIntegerFieldUpdater<ActionResult> COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(ActionResult.class, "count");
+    private static final AtomicIntegerFieldUpdater<ActionResult> MARKED =
+            AtomicIntegerFieldUpdater.newUpdater(ActionResult.class, "marked");
+    private static final AtomicIntegerFieldUpdater<ActionResult> BOMBED =
+            AtomicIntegerFieldUpdater.newUpdater(ActionResult.class, "bombed");
+    private static final AtomicIntegerFieldUpdater<ActionResult> EMPTY =
+            AtomicIntegerFieldUpdater.newUpdater(ActionResult.class, "empty");
 
     public boolean local;
 
@@ -63,6 +75,23 @@ public class ActionResult {
                 i2 = 0;
                 j2++;
             }
+            this.localState = StateKey.canonical(this.localState, size);
+        }
+    }
+
+    /**
+     * Count one more action in this state with the given result.
+     * Each counter is updated atomically, so results recorded by
+     * games on other threads are not lost.
+     */
+    public void record(int result){
+        COUNT.incrementAndGet(this);
+        if(result == Map.BOOM){
+            BOMBED.incrementAndGet(this);
+        } else if(result == Map.MARKED){
+            MARKED.incrementAndGet(this);
+        } else {
+            EMPTY.incrementAndGet(this);
         }
     }
 
@@ -74,6 +103,17 @@ public class ActionResult {
         return ((double) bombed) / ((double) count);
     }
 
+    /**
+     * Index key of the local state, which ignores the centre cell
+     * as equals does for local states.  Local states are kept in the
+     * canonical form of StateKey, so a state and its rotations and
+     * reflections have the same key.
+     * @see StateKey#indexKey
+     */
+    public Object key(){
+        return StateKey.indexKey(localState, size);
+    }
+
     public boolean equals(ActionResult localState){
         for(int j = 0; j < size; j++){
             for(int i = 0; i < size; i++){
@@ -25,10 +25,10 @@ public class QLearnerStrategy implements Strategy {
         m.probe(currentTile.x, currentTile.y);
 
         while(!m.done()){
-            GetFringeTiles(m, currentTile.x, currentTile.y, fringeTiles);
+            GetFringeTiles(m, fringeTiles);
 
             // if tiles left are only in fringe, then select tiles in order of best q value
-            if(fringeTiles.size() == ((m.columns() * m.rows()) - m.Revealed())){
+            if(m.frontierSize() == m.unprobedCells()){
                 probeThreshold = 0;
             }
 
@@ -40,12 +40,11 @@ public class QLearnerStrategy implements Strategy {
                     int x = m.pick(m.columns());
                     int y = m.pick(m.rows());
                     currentTile = new Tile(x, y, m.look(x, y));
-                } while(currentTile.state != Map.UNPROBED || fringeTiles.contains(currentTile));
+                } while(currentTile.state != Map.UNPROBED || m.isFrontier(currentTile.x, currentTile.y));
             }
 
             int result = m.probe(currentTile.x, currentTile.y);
             PGMS.actionHistory3x3.saveAction(m, currentTile.x, currentTile.y, result,  false);
-            fringeTiles.remove(currentTile);
         }
     }
 
@@ -108,31 +107,13 @@ public class QLearnerStrategy implements Strategy {
         return bestTile;
     }
 
-    public void GetFringeTiles(Map m, int x, int y, ArrayList<Tile> list){
-        for(int j = 1 + y; j >= -1 + y; j--){
-            for(int i = -1 + x; i <= 1 + x; i++){
-                if(i == y && j == x){
-                    continue;
-                }
-
-                int state = m.look(i, j);
-
-                if(state == Map.UNPROBED){
-                    Tile tile = new Tile(i, j, state);
-
-                    boolean contains = false;
-                    for(Tile t : list){
-                        if(t.x == tile.x && t.y == tile.y){
-                            contains = true;
-                            break;
-                        }
-                    }
-
-                    if(!contains){
-                        list.add(tile);
-                    }
-                }
-            }
+    // The map keeps its frontier, the unprobed tiles next to probed ones
+    public void GetFringeTiles(Map m, ArrayList<Tile> list){
+        list.clear();
+        for(int k = m.nextFrontier(0); k >= 0; k = m.nextFrontier(k + 1)){
+            int x = k % m.columns();
+            int y = k / m.columns();
+            list.add(new Tile(x, y, m.look(x, y)));
         }
     }
 
@@ -0,0 +1,222 @@
+package qlearner;
+
+import map.Map;
+
+import java.util.Arrays;
+
+/**
+ * Packed key of a local state, used to index an ActionHistory.
+ * Every cell of the state but the centre takes four bits, so the eight
+ * neighbours of a 3x3 state fit in a single long.  The centre is left
+ * out because ActionResult.equals ignores it.
+ * <p>
+ * A local state looks the same to a player after it is rotated or
+ * reflected, so a history stores each state in canonical form: of the
+ * eight rotations and reflections of the state, the one with the least
+ * key.
+ * <p>
+ * A history of 3x3 states, the one PGMS keeps, is indexed by the packed
+ * long itself, which is built and made canonical without allocating
+ * anything.  Larger states are indexed by a StateKey.
+ */
+public final class StateKey {
+
+    private static final int BITS = 4;
+    private static final int CELLS_PER_WORD = 64 / BITS;
+
+    // PERMUTATIONS[t][n] is the cell of a packed 3x3 state that the t'th
+    // symmetry moves to cell n
+    private static final int[][] PERMUTATIONS = new int[8][8];
+
+    static {
+        int[][] cells = new int[3][3];
+        int n = 0;
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 3; i++) {
+                if (i != 1 || j != 1) {
+                    cells[j][i] = n++;
+                }
+            }
+        }
+        for (int t = 0; t < 8; t++) {
+            int[][] s = transform(cells, 3, t);
+            n = 0;
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 3; i++) {
+                    if (i != 1 || j != 1) {
+                        PERMUTATIONS[t][n++] = s[j][i];
+                    }
+                }
+            }
+        }
+    }
+
+    private final long[] words;
+    private final int hash;
+
+    private StateKey(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Index key of a local state, stored as in ActionResult.localState:
+     * the packed long of a 3x3 state, or the StateKey of a larger one.
+     */
+    public static Object indexKey(int[][] state, int size) {
+        if (size == 3) {
+            long word = 0;
+            int n = 0;
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 3; i++) {
+                    if (i != 1 || j != 1) {
+                        word |= bits(state[j][i]) << (n++ * BITS);
+                    }
+                }
+            }
+            return canonical(word);
+        }
+        return of(state, size);
+    }
+
+    /**
+     * Index key of the canonical form of the local state around (x, y),
+     * the same as the index key of the state of an ActionResult made
+     * from the map at (x, y).
+     */
+    public static Object indexKey(Map m, int x, int y, int size) {
+        if (size == 3) {
+            long word = 0;
+            int n = 0;
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 3; i++) {
+                    if (i != 1 || j != 1) {
+                        word |= bits(m.look(x - 1 + i, y + 1 - j)) << (n++ * BITS);
+                    }
+                }
+            }
+            return canonical(word);
+        }
+        return of(m, x, y, size);
+    }
+
+    // The least of the eight symmetries of a packed 3x3 state, which is
+    // the packed canonical form, as the eight cells fit in 32 bits
+    private static long canonical(long word) {
+        long best = Long.MAX_VALUE;
+        for (int t = 0; t < 8; t++) {
+            long w = 0;
+            for (int n = 0; n < 8; n++) {
+                w |= (word >>> (PERMUTATIONS[t][n] * BITS) & ((1 << BITS) - 1)) << (n * BITS);
+            }
+            best = Math.min(best, w);
+        }
+        return best;
+    }
+
+    /**
+     * Key of a local state, stored as in ActionResult.localState.
+     */
+    public static StateKey of(int[][] state, int size) {
+        int center = (size - 1) / 2;
+        long[] words = new long[wordsFor(size)];
+        int n = 0;
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                if (i != center || j != center) {
+                    put(words, n++, state[j][i]);
+                }
+            }
+        }
+        return new StateKey(words);
+    }
+
+    /**
+     * Key of the canonical form of the local state around (x, y), the
+     * same as the key of the state of an ActionResult made from the
+     * map at (x, y).
+     */
+    public static StateKey of(Map m, int x, int y, int size) {
+        int center = (size - 1) / 2;
+        int[][] state = new int[size][size];
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                if (i != center || j != center) {
+                    state[j][i] = m.look(x - center + i, y + center - j);
+                }
+            }
+        }
+        return of(canonical(state, size), size);
+    }
+
+    /**
+     * The canonical form of a local state: the rotation or reflection
+     * of the state with the least key.  The centre is set to
+     * Map.UNPROBED, as in the states of ActionResult.
+     */
+    public static int[][] canonical(int[][] state, int size) {
+        int[][] best = null;
+        StateKey bestKey = null;
+        for (int t = 0; t < 8; t++) {
+            int[][] s = transform(state, size, t);
+            StateKey key = of(s, size);
+            if (bestKey == null || key.compareTo(bestKey) < 0) {
+                best = s;
+                bestKey = key;
+            }
+        }
+        int center = (size - 1) / 2;
+        best[center][center] = Map.UNPROBED;
+        return best;
+    }
+
+    // The t'th of the eight symmetries of a square
+    private static int[][] transform(int[][] state, int size, int t) {
+        int n = size - 1;
+        int[][] s = new int[size][size];
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                int a = (t & 1) == 0 ? j : i;       // Transpose
+                int b = (t & 1) == 0 ? i : j;
+                if ((t & 2) != 0) a = n - a;        // Flip rows
+                if ((t & 4) != 0) b = n - b;        // Flip columns
+                s[j][i] = state[a][b];
+            }
+        }
+        return s;
+    }
+
+    // Unsigned lexicographic order of the packed words
+    private int compareTo(StateKey key) {
+        for (int w = 0; w < words.length; w++) {
+            int c = Long.compareUnsigned(words[w], key.words[w]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static int wordsFor(int size) {
+        return (size * size - 1 + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+    }
+
+    // Cell values run from Map.OUT_OF_BOUNDS to 8
+    private static long bits(int value) {
+        return (value - Map.OUT_OF_BOUNDS) & ((1 << BITS) - 1);
+    }
+
+    private static void put(long[] words, int n, int value) {
+        words[n / CELLS_PER_WORD] |= bits(value) << (n % CELLS_PER_WORD * BITS);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof StateKey && Arrays.equals(words, ((StateKey) obj).words);
+    }
+}
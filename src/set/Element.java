@@ -45,4 +45,15 @@ public interface Element {
    * @return 		true if this element is the less than the other
    */
   boolean less(Element e);
+
+  /**
+   * A hash of this element.  Elements that are the same must have
+   * the same hash, so sets can tell that two sets differ without
+   * comparing their elements.  The default hash of zero is always
+   * correct, but tells sets nothing.
+   * @return 		the hash
+   */
+  default int hash() {
+    return 0;
+  }
 }
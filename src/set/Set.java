@@ -25,9 +25,15 @@ Boston, MA 02111-1307, USA.
  * This implementation of sets assumes elements are immutable.
  * Note that a set may be an element of a set or a component of an
  * element of a set. <p>
- * The elements of a set are stored in a sorted list.  An alternative
- * might use hash tables instead of lists, but hash tables were thought
- * to use too much space. <p>
+ * The elements of a set are stored in a sorted array, which is never
+ * modified once the set has been made.  Membership is decided by
+ * binary search, and union, intersection and difference merge the
+ * arrays of the two sets in a single pass.  The set returned by
+ * but_first shares the array of the original set.  The cardinality
+ * of a set is the length of its part of the array. <p>
+ * A set computes its hash from the hashes of its elements when first
+ * asked for it, and keeps it.  Two sets with different hashes cannot
+ * be the same, so same rejects them without comparing elements. <p>
  * Declaring this class final seems to expose a compiler error when
  * using the -O switch.  Code running as an applet in the appletviewer
  * produce
@@ -39,14 +45,24 @@ Boston, MA 02111-1307, USA.
  * @author John D. Ramsdell
  */
 public class Set implements Element {
-  private List t;		// List of elements in the set.
+  private static final Element none[] = new Element[0];
+
+  private Element t[];		// Sorted elements; t[lo] is the first
+  private int lo;		// element in this set.
+  private int h = 0;		// Hash, or 0 if not yet known
 
   public Set() {
-    t = null;
+    t = none;
+    lo = 0;
   }
 
-  private Set(List t) {
+  private Set(Element t[], int lo) {
     this.t = t;
+    this.lo = lo;
+  }
+
+  private Set(Element t[]) {
+    this(t, 0);
   }
 
   /**
@@ -54,7 +70,27 @@ public class Set implements Element {
    * @return 		true if this is the empty set
    */
   public boolean empty() {
-    return t == null;
+    return lo == t.length;
+  }
+
+  /* Binary search for e.  Returns the index of e in t when e is
+   * in the set, and otherwise -(i + 1), where i is the index at
+   * which e would be inserted. */
+  private int find(Element e) {
+    int l = lo;
+    int hi = t.length;
+    while (l < hi) {
+      int m = (l + hi) >>> 1;
+      Element e0 = t[m];
+
+      if (e.same(e0))
+	return m;
+      else if (e.less(e0))
+	hi = m;
+      else
+	l = m + 1;
+    }
+    return -(l + 1);
   }
 
   /**
@@ -63,25 +99,15 @@ public class Set implements Element {
    * @return 		the new set
    */
   public Set adjoin(Element e) {
-    if (list_member(e, t))
-      return this;
-    else
-      return new Set(list_adjoin(e, t));
-  }
-
-  private static List list_adjoin(Element e, List t) {
-    if (t == null)
-      return new List(e, t);
-    else {
-      Element e0 = t.first();
-
-      if (e.same(e0))
-	return t;		// e already in the list
-      else if (e.less(e0))
-	return new List(e, t);
-      else
-	return new List(e0, list_adjoin(e, t.but_first()));
-    }
+    int i = find(e);
+    if (i >= 0)
+      return this;		// e already in the set
+    i = -(i + 1);
+    Element t1[] = new Element[t.length - lo + 1];
+    System.arraycopy(t, lo, t1, 0, i - lo);
+    t1[i - lo] = e;
+    System.arraycopy(t, i, t1, i - lo + 1, t.length - i);
+    return new Set(t1);
   }
 
   /**
@@ -90,25 +116,15 @@ public class Set implements Element {
    * @return 		the new set
    */
   public Set remove(Element e) {
-    if (!list_member(e, t))
-      return this;
-    else
-      return new Set(list_remove(e, t));
-  }
-
-  private static List list_remove(Element e, List t) {
-    if (t == null)
-      return t;
-    else {
-      Element e0 = t.first();
-
-      if (e.same(e0))
-	return t.but_first();
-      else if (e.less(e0))
-	return t;		// e not in the list
-      else
-	return new List(e0, list_remove(e, t.but_first()));
-    }
+    int i = find(e);
+    if (i < 0)
+      return this;		// e not in the set
+    else if (i == lo)
+      return new Set(t, lo + 1);
+    Element t1[] = new Element[t.length - lo - 1];
+    System.arraycopy(t, lo, t1, 0, i - lo);
+    System.arraycopy(t, i + 1, t1, i - lo, t.length - i - 1);
+    return new Set(t1);
   }
 
   /**
@@ -117,38 +133,8 @@ public class Set implements Element {
    * @return 		true if element is in the set
    */
   public boolean member(Element e) {
-    return list_member(e, t);
-  }
-
-  private static boolean list_member(Element e, List t) {
-    for (; t != null; t = t.but_first()) {
-      Element e0 = t.first();
-
-      if (e.same(e0))
-	return true;
-      else if (e.less(e0))
-	return false;
-    }
-    return false;
-  }
-
-  /* When implementations are known to be tail recursive,
-     you can write list_member in this straightforward way.
-  private static boolean list_member(Element e, List t) {
-    if (t == null)
-      return false;
-    else {
-      Element e0 = t.first();
-
-      if (e.same(e0))
-	return true;
-      else if (e.less(e0))
-	return false;
-      else
-	return list_member(e, t.but_first());
-    }
+    return find(e) >= 0;
   }
-  */
 
   /**
    * Is this set a proper subset of another set?
@@ -156,12 +142,21 @@ public class Set implements Element {
    * @return 		true if this set is a proper subset of the other
    */
   public boolean proper_subset(Set s) {
-    return list_subset(t, s.t) && !list_subset(s.t, t);
+    return card() < s.card() && subset(s);
   }
 
-  private static boolean list_subset(List t0, List t1) {
-    for (; t0 != null; t0 = t0.but_first())
-      if (!list_member(t0.first(), t1)) return false;
+  private boolean subset(Set s) {
+    Element t1[] = s.t;
+    int j = s.lo;
+    for (int i = lo; i < t.length; i++) {
+      Element e = t[i];
+      for (;;) {
+	if (j == t1.length || e.less(t1[j]))
+	  return false;		// e not in s
+	else if (e.same(t1[j++]))
+	  break;
+      }
+    }
     return true;
   }
 
@@ -171,10 +166,39 @@ public class Set implements Element {
    * @return 		the union of this set and the other
    */
   public Set union(Set s) {
-    List t1 = t;
-    for (List t0 = s.t; t0 != null; t0 = t0.but_first())
-      t1 = list_adjoin(t0.first(), t1);
-    return new Set(t1);
+    if (s.empty())
+      return this;
+    else if (empty())
+      return s;
+    Element t0[] = t;
+    Element t1[] = s.t;
+    Element u[] = new Element[card() + s.card()];
+    int i = lo;
+    int j = s.lo;
+    int k = 0;
+    while (i < t0.length && j < t1.length) {
+      Element e0 = t0[i];
+      Element e1 = t1[j];
+
+      if (e0.same(e1)) {
+	u[k++] = e0;
+	i++;
+	j++;
+      }
+      else if (e0.less(e1)) {
+	u[k++] = e0;
+	i++;
+      }
+      else {
+	u[k++] = e1;
+	j++;
+      }
+    }
+    while (i < t0.length)
+      u[k++] = t0[i++];
+    while (j < t1.length)
+      u[k++] = t1[j++];
+    return new Set(trim(u, k));
   }
 
   /**
@@ -183,34 +207,28 @@ public class Set implements Element {
    * @return 		the intersection of this set and the other
    */
   public Set intersect(Set s) {
-    return new Set(list_intersect(t, s.t));
-  }
-
-  private static List list_intersect(List t0, List t1) {
-    for (; t0 != null; t0 = t0.but_first()) {
-      Element e = t0.first();
-
-      if (list_member(e, t1))
-	return new List(e, list_intersect(t0.but_first(), t1));
-    }
-    return null;
-  }
-
-  /* When implementations are known to be tail recursive,
-     you can write list_intersect in this straightforward way.
-  private static List list_intersect(List t0, List t1) {
-    if (t0 == null)
-      return t0;
-    else {
-      Element e = t0.first();
-
-      if (list_member(e, t1))
-	return new List(e, list_intersect(t0.but_first(), t1));
+    Element t0[] = t;
+    Element t1[] = s.t;
+    Element u[] = new Element[Math.min(card(), s.card())];
+    int i = lo;
+    int j = s.lo;
+    int k = 0;
+    while (i < t0.length && j < t1.length) {
+      Element e0 = t0[i];
+      Element e1 = t1[j];
+
+      if (e0.same(e1)) {
+	u[k++] = e0;
+	i++;
+	j++;
+      }
+      else if (e0.less(e1))
+	i++;
       else
-	return list_intersect(t0.but_first(), t1);
+	j++;
     }
+    return new Set(trim(u, k));
   }
-  */
 
   /**
    * Set difference.
@@ -218,10 +236,42 @@ public class Set implements Element {
    * @return 		the set difference of this set and the other
    */
   public Set set_difference(Set s) {
-    List t1 = t;
-    for (List t0 = s.t; t0 != null; t0 = t0.but_first())
-      t1 = list_remove(t0.first(), t1);
-    return new Set(t1);
+    if (s.empty())
+      return this;
+    Element t0[] = t;
+    Element t1[] = s.t;
+    Element u[] = new Element[card()];
+    int i = lo;
+    int j = s.lo;
+    int k = 0;
+    while (i < t0.length && j < t1.length) {
+      Element e0 = t0[i];
+      Element e1 = t1[j];
+
+      if (e0.same(e1)) {
+	i++;
+	j++;
+      }
+      else if (e0.less(e1))
+	u[k++] = t0[i++];
+      else
+	j++;
+    }
+    while (i < t0.length)
+      u[k++] = t0[i++];
+    if (k == card())
+      return this;		// Nothing removed
+    return new Set(trim(u, k));
+  }
+
+  private static Element[] trim(Element u[], int k) {
+    if (k == u.length)
+      return u;
+    else if (k == 0)
+      return none;
+    Element u1[] = new Element[k];
+    System.arraycopy(u, 0, u1, 0, k);
+    return u1;
   }
 
   /**
@@ -229,10 +279,10 @@ public class Set implements Element {
    * @return 		some element
    */
   public Element first() {
-    if (t == null)
+    if (empty())
       return null;
     else
-      return t.first();
+      return t[lo];
   }
 
   /**
@@ -240,10 +290,10 @@ public class Set implements Element {
    * @return 		the set with the first element removed
    */
   public Set but_first() {
-    if (t == null)
+    if (empty())
       return null;
     else
-      return new Set(t.but_first());
+      return new Set(t, lo + 1);
   }
 
   /**
@@ -251,10 +301,7 @@ public class Set implements Element {
    * @return 		the number of elments that are in the set
    */
   public int card() {
-    int c = 0;
-    for (List t0 = t; t0 != null; t0 = t0.but_first())
-      c++;
-    return c;
+    return t.length - lo;
   }
 
   /**
@@ -262,83 +309,53 @@ public class Set implements Element {
    * @see Element#same
    */
   public boolean same(Element e) {
-    return e != null
-      && e instanceof Set
-	&& list_same(t, ((Set)e).t);
-  }
-
-  private static boolean list_same(List t0, List t1) {
-    for (;;)
-      if (t0 == null)
-	return t1 == null;
-      else
-	if (t1 == null || !t0.first().same(t1.first()))
-	  return false;
-	else {
-	  t0 = t0.but_first();
-	  t1 = t1.but_first();
-	}
+    if (e == null || !(e instanceof Set))
+      return false;
+    Set s = (Set)e;
+    if (card() != s.card() || hash() != s.hash())
+      return false;
+    for (int i = lo, j = s.lo; i < t.length; i++, j++)
+      if (!t[i].same(s.t[j]))
+	return false;
+    return true;
   }
 
-  /* When implementations are known to be tail recursive,
-     you can write list_same in this straightforward way.
-  private static boolean list_same(List t0, List t1) {
-    if (t0 == null)
-      return t1 == null;
-    else
-      return t1 != null
-	&& t0.first().same(t1.first())
-	  && list_same(t0.but_first(), t1.but_first());
+  /**
+   * A hash of this set, which depends only on its elements.
+   * @see Element#hash
+   */
+  public int hash() {
+    int z = h;
+    if (z == 0) {
+      for (int i = lo; i < t.length; i++)
+	z = 31 * z + t[i].hash();
+      h = z = z == 0 ? 1 : z;	// Zero means not yet known
+    }
+    return z;
   }
-  */
 
   /**
    * Is this element less than some other element?
+   * The order is lexicographic on the sorted elements.
    * @see Element#less
    */
   public boolean less(Element e) {
     if (e == null || !(e instanceof Set))
       return false;
-    else
-      return list_less(t, ((Set)e).t);
-  }
-
-  private static boolean list_less(List t0, List t1) {
-    for (;;)
-      if (t0 == null)
-	return t1 != null;
-      else if (t1 == null)
+    Set s = (Set)e;
+    for (int i = lo, j = s.lo; ; i++, j++)
+      if (i == t.length)
+	return j != s.t.length;
+      else if (j == s.t.length)
 	return false;
       else {
-	Element e0 = t0.first();
-	Element e1 = t1.first();
+	Element e0 = t[i];
+	Element e1 = s.t[j];
 
 	if (e0.less(e1))
 	  return true;
 	else if (!e0.same(e1))
 	  return false;
-	else {
-	  t0 = t0.but_first();
-	  t1 = t1.but_first();
-	}
       }
   }
-
-  /* When implementations are known to be tail recursive,
-     you can write list_intersect in this straightforward way.
-  private static boolean list_less(List t0, List t1) {
-    if (t0 == null)
-      return t1 != null;
-    else if (t1 == null)
-      return false;
-    else {
-      Element e0 = t0.first();
-      Element e1 = t1.first();
-
-      return e0.less(e1)
-	|| e0.same(e1)
-	  && list_less(t0.but_first(), t1.but_first());
-    }
-  }
-  */
 }
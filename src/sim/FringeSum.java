@@ -0,0 +1,177 @@
+package sim;
+
+import map.Map;
+
+/**
+ * Keeps the sum over the fringe of a simulated map up to date as cells
+ * are marked and unmarked.  The fringe is the list of revealed tiles a
+ * strategy has collected; a tile may appear in it more than once, and
+ * then counts more than once.  The value of a fringe tile is the number
+ * it shows less its marked neighbours, so marking or unmarking a cell
+ * changes only the tiles around it, and the sums are updated by looking
+ * at those eight tiles instead of the whole fringe.
+ * <p>
+ * Marks must go through mark and unmark, so the sums follow the map.
+ */
+final class FringeSum {
+
+	private final int width;
+	private final int height;
+	private final int[] count;	// Times each cell appears in the fringe
+	private final int[] value;	// Number shown less marked neighbours
+	private final int[] unprobed;	// Unprobed neighbours
+	private final int[] cells;	// Distinct fringe cells
+	private int size = 0;
+
+	private int sum = 0;		// Sum of values
+	private int negative = 0;	// Tiles with more marks than mines
+	private int invalid = 0;	// Tiles that cannot be satisfied
+
+	FringeSum(int width, int height) {
+		this.width = width;
+		this.height = height;
+		count = new int[width * height];
+		value = new int[width * height];
+		unprobed = new int[width * height];
+		cells = new int[width * height];
+	}
+
+	/**
+	 * Copy a fringe sum, to follow a copy of its map.
+	 */
+	FringeSum(FringeSum f) {
+		width = f.width;
+		height = f.height;
+		count = f.count.clone();
+		value = f.value.clone();
+		unprobed = f.unprobed.clone();
+		cells = f.cells.clone();
+		size = f.size;
+		sum = f.sum;
+		negative = f.negative;
+		invalid = f.invalid;
+	}
+
+	/**
+	 * Add a tile to the fringe.
+	 */
+	void add(int x, int y) {
+		int k = y * width + x;
+		if(count[k]++ == 0) {
+			cells[size++] = k;
+		}
+	}
+
+	/**
+	 * Compute the values of the fringe from a map.
+	 */
+	void start(Map m) {
+		sum = negative = invalid = 0;
+		for(int n = 0; n < size; n++) {
+			int k = cells[n];
+			int x = k % width;
+			int y = k / width;
+			value[k] = m.look(x,y) - m.markedNeighbours(x,y);
+			unprobed[k] = m.unprobedNeighbours(x,y);
+			include(k, 1);
+		}
+	}
+
+	/**
+	 * Mark a cell of the map.
+	 * @return	true if the cell was unprobed and is now marked
+	 */
+	boolean mark(Map m, int x, int y) {
+		if(m.look(x,y) != Map.UNPROBED) {
+			return false;
+		}
+		m.mark(x,y);
+		if(m.look(x,y) != Map.MARKED) {
+			return false;
+		}
+		update(x, y, -1);
+		return true;
+	}
+
+	/**
+	 * Unmark a cell of the map.
+	 * @return	true if the cell was marked and is now unprobed
+	 */
+	boolean unmark(Map m, int x, int y) {
+		if(m.look(x,y) != Map.MARKED) {
+			return false;
+		}
+		m.unmark(x,y);
+		update(x, y, 1);
+		return true;
+	}
+
+	/**
+	 * The sum of the values of the fringe.
+	 */
+	int sum() {
+		return sum;
+	}
+
+	/**
+	 * The number of fringe tiles with more marked neighbours than the
+	 * number they show.
+	 */
+	int negative() {
+		return negative;
+	}
+
+	/**
+	 * The number of fringe tiles that are negative or have fewer
+	 * unprobed neighbours than mines left to find.
+	 */
+	int invalid() {
+		return invalid;
+	}
+
+	/**
+	 * The value of tile (x, y), or 0 if it is not in the fringe.
+	 */
+	int value(int x, int y) {
+		int k = y * width + x;
+		return count[k] > 0 ? value[k] : 0;
+	}
+
+	/**
+	 * The number of unprobed neighbours of tile (x, y), which must be in
+	 * the fringe.
+	 */
+	int unprobed(int x, int y) {
+		return unprobed[y * width + x];
+	}
+
+	// A cell changed between unprobed and marked; d is -1 for a mark
+	private void update(int x, int y, int d) {
+		for(int i = x - 1; i <= x + 1; i++) {
+			for(int j = y - 1; j <= y + 1; j++) {
+				if(i < 0 || i >= width || j < 0 || j >= height) {
+					continue;
+				}
+				int k = j * width + i;
+				if(count[k] > 0) {
+					include(k, -1);
+					value[k] += d;
+					unprobed[k] += d;
+					include(k, 1);
+				}
+			}
+		}
+	}
+
+	// Add (s = 1) or remove (s = -1) the contribution of cell k
+	private void include(int k, int s) {
+		int c = s * count[k];
+		sum += c * value[k];
+		if(value[k] <= -1) {
+			negative += c;
+			invalid += c;
+		} else if(unprobed[k] < value[k]) {
+			invalid += c;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import map.Strategy;
 import map.Map;
+import map.Neighbours;
 
 public final class SimStrategy implements Strategy {
 
@@ -21,14 +22,19 @@ public final class SimStrategy implements Strategy {
 	private Tile[][] board;
 	private int revealed = 0;
 	private int total = 0;
+	private int joins = 0;			// Tiles that have joined the vote fringe
+	private FringeSum fringeSum;
 
 	void initialize(Map m) {
 		width = m.columns();
 		height = m.rows();
 		total = width * height;
+		revealed = 0;
+		joins = 0;
 		fringe = new ArrayList<Tile>();
 		voteFringe = new ArrayList<Tile>();
 		board = new Tile[width][height];
+		fringeSum = new FringeSum(width, height);
 		for (int i = 0; i < width; i++) {
 			for(int j = 0; j < height; j++) {
 				board[i][j] = new Tile(i,j);
@@ -40,7 +46,7 @@ public final class SimStrategy implements Strategy {
 		int x = m.pick(width);
 		int y = m.pick(height);
 /*
-		while(voteFringe.contains(board[x][y]) && total - revealed != voteFringe.size()) {
+		while(m.isFrontier(x,y) && total - revealed != m.frontierSize()) {
 			x = m.pick(width);
 			y = m.pick(height);
 		}
@@ -48,39 +54,43 @@ public final class SimStrategy implements Strategy {
 		Reveal(x,y,m);
 	}
 
-	void RevealSurrounding(int x,int y, Map m) {
-		int q;
-		for(int i = x - 1; i <= x + 1 ; i++) {
-			for(int j = y - 1; j <= y + 1 ; j++) {
-				if(i == x && j == y) {
-					continue;
-				}
-				q = m.look(i,j);
-				if(q == Map.UNPROBED) {
-					Reveal(i,j,m);
+	/*
+	 * The map opens the region around a 0 itself, and every tile it reveals
+	 * joins the fringe.  Probing a tile again reveals nothing, but it still
+	 * joins the fringe.
+	 */
+	void Reveal(int x, int y, Map m) {
+		int[] opened = m.openDepthFirst(x,y);
+		if(opened.length == 0) {
+			opened = new int[] {y * width + x};
+		}
+		for(int k: opened) {
+			Tile t = board[k % width][k / width];
+			revealed++;
+			fringe.add(t);
+			fringeSum.add(t.x,t.y);
+			if(m.look(t.x,t.y) > 0) {
+				for(int i = t.x - 1; i <= t.x + 1; i++) {
+					for(int j = t.y - 1; j <= t.y+1; j++) {
+						if(m.look(i,j) == Map.UNPROBED && board[i][j].joined == 0) {
+							board[i][j].joined = ++joins;
+						}
+					}
 				}
 			}
 		}
 	}
 
-	void Reveal(int x, int y, Map m) {
-		revealed++;
-		voteFringe.remove(board[x][y]);
-		fringe.add(board[x][y]);
-		int q = m.probe(x,y);
-		if(q == Map.BOOM)
-			return;
-		if(q == 0) {
-			RevealSurrounding(x,y,m);
-		} else {
-			for(int i = x - 1; i <= x + 1; i++) {
-				for(int j = y - 1; j <= y+1; j++) {
-					if(m.look(i,j) == Map.UNPROBED && !voteFringe.contains(board[i][j])) {
-						voteFringe.add(board[i][j]);
-					}
-				}
-			}
+	/*
+	 * The map keeps the vote fringe as its frontier, so read it once a move.
+	 * The search breaks ties by the order tiles joined the fringe, so keep it.
+	 */
+	void ReadFringe(Map m) {
+		voteFringe.clear();
+		for(int k = m.nextFrontier(0); k >= 0; k = m.nextFrontier(k + 1)) {
+			voteFringe.add(board[k % width][k / width]);
 		}
+		voteFringe.sort((a, b) -> a.joined - b.joined);
 	}
 
 	void VotePhase(Map m, boolean markStuff) {
@@ -88,20 +98,10 @@ public final class SimStrategy implements Strategy {
 			t.Reset();//Reset for votes
 		}
 		Iterator<Tile> iFringe = fringe.iterator();
-		int unprobed = 0;
 		while (iFringe.hasNext()) {
 			Tile t = iFringe.next();
-			unprobed = 0;
-			int value = m.look(t.x,t.y);
-			for(int i = t.x - 1;i <= t.x + 1; i++) {
-				for(int j = t.y - 1;j <= t.y + 1; j++) {
-					if(m.look(i,j) == Map.UNPROBED){
-						unprobed++;//counting unprobed neighbors
-					} else if(m.look(i,j) == Map.MARKED) {
-						value--;
-					}
-				}
-			}
+			int unprobed = fringeSum.unprobed(t.x,t.y);//counting unprobed neighbors
+			int value = fringeSum.value(t.x,t.y);
 			if(value == 0) { //remove from fringe, it's done
 				if(markStuff) {
 					iFringe.remove();
@@ -109,16 +109,14 @@ public final class SimStrategy implements Strategy {
 				continue;
 			}
 			double score = 1.0 - (value / (double)unprobed);
-			for(int x = t.x - 1;x <= t.x + 1; x++) {
-				for(int y = t.y - 1;y <= t.y + 1; y++) {
-					if(m.look(x,y) == Map.UNPROBED){
-						if(score <= 5e-5 && markStuff) {//around me is bombs
-							m.mark(x,y);
-							voteFringe.remove(board[x][y]);//Clean up the vote fringe since i marked it as a bomb
-						} else {
-							board[x][y].Vote(score);
-						}
-					}
+			for(int b = m.neighbourMask(t.x,t.y,Map.UNPROBED); b != 0; b &= b - 1) {
+				int x = t.x + Neighbours.dx(Integer.numberOfTrailingZeros(b));
+				int y = t.y + Neighbours.dy(Integer.numberOfTrailingZeros(b));
+				if(score <= 5e-5 && markStuff) {//around me is bombs
+					fringeSum.mark(m,x,y);
+					voteFringe.remove(board[x][y]);//Clean up the vote fringe since i marked it as a bomb
+				} else {
+					board[x][y].Vote(score);
 				}
 			}
 		}
@@ -137,29 +135,13 @@ public final class SimStrategy implements Strategy {
 		return out;
 	}
 
-	int sumFringe(Map m) {
-		Iterator<Tile> iFringe = fringe.iterator();
-		int unprobed = 0;
-		int out = 0;
-		while (iFringe.hasNext()) {
-			Tile t = iFringe.next();
-			unprobed = 0;
-			int value = m.look(t.x,t.y);
-			for(int i = t.x - 1;i <= t.x + 1; i++) {
-				for(int j = t.y - 1;j <= t.y + 1; j++) {
-					if(m.look(i,j) == Map.UNPROBED){
-						unprobed++;//counting unprobed neighbors
-					} else if(m.look(i,j) == Map.MARKED) {
-						value--;
-					}
-				}
-			}
-			if(value <= -1) { //It can't be negative, so increase cost a lot
-				out += 1000;
-			}
-			out += value;
-		}
-		return out;
+	/*
+	 * The values of the fringe of the simulated map are kept by fringeSum,
+	 * so marks on that map must be made through it
+	 */
+	int sumFringe() {
+		//A value can't be negative, so increase cost a lot for each one
+		return fringeSum.sum() + 1000 * fringeSum.negative();
 	}
 
 	/*
@@ -168,6 +150,7 @@ public final class SimStrategy implements Strategy {
 	SimulationResults Simulate(Map m) {
 		SimulationResults out = new SimulationResults();
 		Map clone = m.Clone();
+		fringeSum.start(clone);
 		Tile best = null;
 		Tile marked = null;
 		int fringeScore = 1000000;
@@ -175,10 +158,10 @@ public final class SimStrategy implements Strategy {
 		while(clone.mines_minus_marks() > 0) {
 			marked = null;
 			for(Tile t: voteFringe) {
-				clone.mark(t.x, t.y); //Mark this tile
+				fringeSum.mark(clone, t.x, t.y); //Mark this tile
 				VotePhase(clone, false);//Go through the vote
-				int newScore = sumFringe(clone);
-				clone.unmark(t.x,t.y);
+				int newScore = sumFringe();
+				fringeSum.unmark(clone, t.x,t.y);
 				Tile next = ChooseBest();
 				if(fringeScore > newScore) {
 					fringeScore = newScore;//Minimization of edge bombs
@@ -191,7 +174,7 @@ public final class SimStrategy implements Strategy {
 			}
 			if(! out.marked.contains(marked)) {
 				out.marked.add(marked);
-				clone.mark(marked.x, marked.y);//Mark the best and continue to simulate
+				fringeSum.mark(clone, marked.x, marked.y);//Mark the best and continue to simulate
 			}
 		}
 		out.score = fringeScore;
@@ -207,6 +190,7 @@ public final class SimStrategy implements Strategy {
 		initialize(m);
 		ChooseRandom(m);
 		while(!m.done()) {
+			ReadFringe(m);
 			if(voteFringe.size() > 1) {
 				SimulationResults out = Simulate(m);
 				Tile chosen = out.best;
@@ -220,6 +204,7 @@ public final class SimStrategy implements Strategy {
 	class Tile {
 		int x;
 		int y;
+		int joined;	// When the tile joined the vote fringe, or 0
 		private int votes;
 		private double score;
 		Tile(int xPos, int yPos) {
@@ -7,9 +7,14 @@ package sim;
 
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import map.Strategy;
 import map.Map;
+import map.PGMS;
 
 public final class SimStrategy2 implements Strategy {
 
@@ -21,14 +26,29 @@ public final class SimStrategy2 implements Strategy {
 	private Tile[][] board;
 	private int revealed = 0;
 	private int total = 0;
+	private int joins = 0;			// Tiles that have joined the vote fringe
+	private FringeSum fringeSum;
+
+	final LongAdder nodes = new LongAdder();	// Maps searched, for measuring
+
+	/* Iterative deepening stops when System.nanoTime passes the deadline */
+	private long deadline = 0;		// 0 if there is no deadline
+	private volatile boolean aborted = false;
+	int reached = 0;			// Depth of the last move's search
+
+	/* Threads searching the root in parallel, shared by all instances */
+	private static ForkJoinPool pool;
 
 	void initialize(Map m) {
 		width = m.columns();
 		height = m.rows();
 		total = width * height;
+		revealed = 0;
+		joins = 0;
 		fringe = new ArrayList<Tile>();
 		voteFringe = new ArrayList<Tile>();
 		board = new Tile[width][height];
+		fringeSum = new FringeSum(width, height);
 		for (int i = 0; i < width; i++) {
 			for(int j = 0; j < height; j++) {
 				board[i][j] = new Tile(i,j);
@@ -42,64 +62,50 @@ public final class SimStrategy2 implements Strategy {
 		Reveal(x,y,m);
 	}
 
-	void RevealSurrounding(int x,int y, Map m) {
-		int q;
-		for(int i = x - 1; i <= x + 1 ; i++) {
-			for(int j = y - 1; j <= y + 1 ; j++) {
-				if(i == x && j == y) {
-					continue;
-				}
-				q = m.look(i,j);
-				if(q == Map.UNPROBED) {
-					Reveal(i,j,m);
+	/*
+	 * The map opens the region around a 0 itself, and every tile it reveals
+	 * joins the fringe.  Probing a tile again reveals nothing, but it still
+	 * joins the fringe.
+	 */
+	void Reveal(int x, int y, Map m) {
+		int[] opened = m.openDepthFirst(x,y);
+		if(opened.length == 0) {
+			opened = new int[] {y * width + x};
+		}
+		for(int k: opened) {
+			Tile t = board[k % width][k / width];
+			revealed++;
+			fringe.add(t);
+			fringeSum.add(t.x,t.y);
+			if(m.look(t.x,t.y) > 0) {
+				for(int i = t.x - 1; i <= t.x + 1; i++) {
+					for(int j = t.y - 1; j <= t.y+1; j++) {
+						if(m.look(i,j) == Map.UNPROBED && board[i][j].joined == 0) {
+							board[i][j].joined = ++joins;
+						}
+					}
 				}
 			}
 		}
 	}
 
-	void Reveal(int x, int y, Map m) {
-		revealed++;
-		voteFringe.remove(board[x][y]);
-		fringe.add(board[x][y]);
-		int q = m.probe(x,y);
-		if(q == Map.BOOM)
-			return;
-		if(q == 0) {
-			RevealSurrounding(x,y,m);
-		} else {
-			for(int i = x - 1; i <= x + 1; i++) {
-				for(int j = y - 1; j <= y+1; j++) {
-					if(m.look(i,j) == Map.UNPROBED && !voteFringe.contains(board[i][j])) {
-						voteFringe.add(board[i][j]);
-					}
-				}
-			}
+	/*
+	 * The map keeps the vote fringe as its frontier, so read it once a move.
+	 * The search breaks ties by the order tiles joined the fringe, so keep it.
+	 */
+	void ReadFringe(Map m) {
+		voteFringe.clear();
+		for(int k = m.nextFrontier(0); k >= 0; k = m.nextFrontier(k + 1)) {
+			voteFringe.add(board[k % width][k / width]);
 		}
+		voteFringe.sort((a, b) -> a.joined - b.joined);
 	}
 
-	Tile ChooseBest(Map m) {
+	Tile ChooseBest(Map m, FringeSum f) {
 		if(voteFringe.size() == 0) {
 			return null;
 		}
-		Iterator<Tile> iFringe = fringe.iterator();
-		int unprobed = 0;
 		Tile out = null;
-		while (iFringe.hasNext()) {
-			Tile t = iFringe.next();
-			unprobed = 0;
-			int value = m.look(t.x,t.y);
-			for(int i = t.x - 1;i <= t.x + 1; i++) {
-				for(int j = t.y - 1;j <= t.y + 1; j++) {
-					if(m.look(i,j) == Map.UNPROBED){
-						unprobed++;//counting unprobed neighbors
-					} 
-					if(m.look(i,j) == Map.MARKED) {
-						value--;
-					}
-				}
-			}
-			t.value = value;//update the value so that i can choose the best
-		}
 		int best = 1000;
 		for (Tile t: voteFringe) {
 			int sum = 0;
@@ -113,9 +119,9 @@ public final class SimStrategy2 implements Strategy {
 						|| j < 0 || j >= board[i].length) {
 						continue;
 					}
-					Tile cur = board[i][j];
-					if(cur.value > 0) {
-						sum += cur.value;
+					int value = f.value(i,j);
+					if(value > 0) {
+						sum += value;
 					}
 				}
 			}
@@ -127,74 +133,282 @@ public final class SimStrategy2 implements Strategy {
 		return out;
 	}
 
-	int sumFringe(Map m) {
-		Iterator<Tile> iFringe = fringe.iterator();
-		int unprobed = 0;
-		int out = 0;
-		while (iFringe.hasNext()) {
-			Tile t = iFringe.next();
-			unprobed = 0;
-			int value = m.look(t.x,t.y);
-			for(int i = t.x - 1;i <= t.x + 1; i++) {
-				for(int j = t.y - 1;j <= t.y + 1; j++) {
-					if(m.look(i,j) == Map.UNPROBED){
-						unprobed++;//counting unprobed neighbors
-					} 
-					if(m.look(i,j) == Map.MARKED) {
-						value--;
-					}
-				}
-			}
-			
-			if(value <= -1) { //It can't be negative, so set cost to a high value
-				return 1000000;
-			} else if(unprobed < value) { //Impossible solution, so set cost to a high value
-				return 1000000;
-			}
-			out += value;
+	/*
+	 * The values of the fringe of a simulated map are kept by a FringeSum,
+	 * so marks on that map must be made through it
+	 */
+	int sumFringe(FringeSum f) {
+		if(f.invalid() > 0) { //Negative or impossible, so set cost to a high value
+			return 1000000;
 		}
-		return out;
+		return f.sum();
 	}
 
 
 	/*
 	 * Add for back tracking
+	 *
+	 * Each child is searched by marking its tile on the one simulated map
+	 * and unmarking it afterwards.  Results are never modified once
+	 * returned, so they can be shared.
+	 *
+	 * When deepening, pv holds the marks leading to the best result of the
+	 * previous iteration, and the tile it marks next is tried first.  Once
+	 * the deadline passes, the search unwinds without storing anything.
 	 */
-	SimulationResults Simulate(Map m, SimulationResults current, int depth, int score) {
-		current.best = ChooseBest(m);
-		current.score = sumFringe(m) + score;
+	SimulationResults Simulate(Map m, FringeSum f, SimulationResults current, int depth, int score,
+		ArrayList<Tile> pv) {
+		nodes.increment();
+		current.best = ChooseBest(m, f);
+		current.score = sumFringe(f) + score;
 		if(depth <= 0 || voteFringe.size() - current.marked.size() < 2) { //stop marking if we're down to 1 tile
 			return current;
 		}
+		if(OutOfTime()) {
+			return current;
+		}
 		SimulationResults best = current.Clone();
-		for(int i = 0; i < voteFringe.size(); i++) {
+		int first = First(pv, current.marked.size());
+		for(int n = 0; n < voteFringe.size(); n++) {
+			int i = Ordered(n, first);
 			Tile t = voteFringe.get(i);
-			Map clonedMap = m.Clone();
-			clonedMap.mark(t.x,t.y);
+			SimulationResults next = null;
+			boolean marked = f.mark(m,t.x,t.y);
+			int childScore = sumFringe(f) + score;
+			if(childScore < best.score) {//only investigate score that are lower by marking that
+				SimulationResults child = current.Clone();
+				child.marked.add(t);
+				child.bombs = current.bombs + 1;
+				child.score = childScore;
+				next = Simulate(m, f, child, depth - 1, score, i == first ? pv : null);
+			}
+			if(marked) {
+				f.unmark(m,t.x,t.y);
+			}
+			if(aborted) {
+				return best;
+			}
+			if(next == null) {
+				continue;
+			}
+			if(next.score < best.score || (best.score == next.score && best.bombs > next.bombs)) {
+				best = next;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * The index in voteFringe of the tile marked at the given ply of pv,
+	 * or -1 if there is none
+	 */
+	private int First(ArrayList<Tile> pv, int ply) {
+		if(pv == null || ply >= pv.size()) {
+			return -1;
+		}
+		return voteFringe.indexOf(pv.get(ply));
+	}
+
+	/*
+	 * The index of the n'th child to try when index first is tried first
+	 */
+	private static int Ordered(int n, int first) {
+		if(first < 0 || n > first) {
+			return n;
+		}
+		return n == 0 ? first : n - 1;
+	}
+
+	private boolean OutOfTime() {
+		if(!aborted && deadline != 0 && System.nanoTime() - deadline > 0) {
+			aborted = true;
+		}
+		return aborted;
+	}
+
+	/*
+	 * Simulate from the root, searching its children in parallel.
+	 *
+	 * Simulate searches a child only if its score is below the best result
+	 * of the children before it, and that best is never above the score of
+	 * any earlier child.  So only children scoring below every earlier one
+	 * can be searched, and those are forked.  Before it starts, a fork
+	 * folds the results of the earlier children that have finished, in
+	 * order, and gives up if Simulate would not search its child either.
+	 * The results are then folded in order exactly as Simulate does, so
+	 * the move chosen is the same, ties included, however the forks run.
+	 * Children are taken in the order Simulate would take them with pv.
+	 */
+	SimulationResults SimulateParallel(Map m, FringeSum f, int depth, ArrayList<Tile> pv) {
+		SimulationResults current = new SimulationResults();
+		nodes.increment();
+		current.best = ChooseBest(m, f);
+		current.score = sumFringe(f);
+		if(depth <= 0 || voteFringe.size() < 2) {
+			return current;
+		}
+		int n = voteFringe.size();
+		int first = First(pv, 0);
+		Tile[] tiles = new Tile[n];
+		int[] scores = new int[n];
+		AtomicReferenceArray<SimulationResults> results =
+			new AtomicReferenceArray<SimulationResults>(n);
+		ArrayList<ForkJoinTask<?>> forks = new ArrayList<ForkJoinTask<?>>();
+		int bound = current.score;
+		for(int i = 0; i < n; i++) {
+			Tile t = tiles[i] = voteFringe.get(Ordered(i, first));
+			boolean marked = f.mark(m,t.x,t.y);
+			scores[i] = sumFringe(f);
+			if(marked) {
+				f.unmark(m,t.x,t.y);
+			}
+			if(scores[i] < bound) {
+				bound = scores[i];
+				forks.add(pool().submit(new Child(m, f, current, i, depth,
+					i == 0 && first >= 0 ? pv : null, tiles, scores, results)));
+			}
+		}
+		for(ForkJoinTask<?> fork: forks) {
+			fork.join();
+		}
+		SimulationResults best = current.Clone();
+		if(aborted) {
+			return best;
+		}
+		for(int i = 0; i < n; i++) {
+			if(scores[i] >= best.score) {
+				continue;
+			}
+			SimulationResults next = results.get(i);
+			if(next.score < best.score || (best.score == next.score && best.bombs > next.bombs)) {
+				best = next;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Search one child of the root on its own copy of the simulated map
+	 */
+	private final class Child extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Map m;
+		private final FringeSum f;
+		private final SimulationResults current;
+		private final int i;
+		private final int depth;
+		private final ArrayList<Tile> pv;
+		private final Tile[] tiles;
+		private final int[] scores;
+		private final AtomicReferenceArray<SimulationResults> results;
+
+		Child(Map m, FringeSum f, SimulationResults current, int i, int depth,
+			ArrayList<Tile> pv, Tile[] tiles, int[] scores,
+			AtomicReferenceArray<SimulationResults> results) {
+			this.m = m.Clone();
+			this.f = new FringeSum(f);
+			this.current = current;
+			this.i = i;
+			this.depth = depth;
+			this.pv = pv;
+			this.tiles = tiles;
+			this.scores = scores;
+			this.results = results;
+		}
+
+		protected void compute() {
+			int bound = current.score;//best score Simulate could have by child i
+			for(int j = 0; j < i; j++) {
+				if(scores[j] >= bound) {
+					continue;
+				}
+				SimulationResults r = results.get(j);
+				if(r == null) {
+					break;//not searched yet
+				}
+				bound = Math.min(bound, r.score);
+			}
+			if(scores[i] >= bound) {
+				return;//Simulate would not search it
+			}
+			Tile t = tiles[i];
+			f.mark(m,t.x,t.y);
 			SimulationResults child = current.Clone();
 			child.marked.add(t);
 			child.bombs = current.bombs + 1;
-			child.score = sumFringe(clonedMap) + score;
-			if(child.score < best.score) {//only investigate score that are lower by marking that
-				SimulationResults next = Simulate(clonedMap, child, depth - 1, score);
-				if(next.score < best.score || (best.score == next.score && best.bombs > next.bombs)) {
-					best = next;
-				}
+			child.score = scores[i];
+			SimulationResults next = Simulate(m, f, child, depth - 1, 0, pv);
+			if(aborted) {
+				return;
 			}
+			results.set(i, next);
 		}
-		return best;
+	}
+
+	private static synchronized ForkJoinPool pool() {
+		if(pool == null) {
+			pool = new ForkJoinPool(PGMS.searchThreads);
+		}
+		return pool;
+	}
+
+	/*
+	 * Search for the next move.  With a move budget, search to depth 1,
+	 * then 2 and so on, each iteration trying the best line of the one
+	 * before first, and keep the result of the deepest iteration to finish
+	 * in time.  Searches deeper than the vote fringe allows are the same
+	 * as the deepest it does allow, so deepening stops there.
+	 */
+	SimulationResults Search(Map simulated) {
+		if(PGMS.moveBudget <= 0) {
+			reached = PGMS.searchDepth;
+			return Search(simulated, PGMS.searchDepth, null);
+		}
+		long start = System.nanoTime();
+		deadline = start + PGMS.moveBudget;
+		aborted = false;
+		SimulationResults out = Search(simulated, 0, null);
+		reached = 0;
+		for(int depth = 1; depth <= PGMS.searchDepth && depth < voteFringe.size(); depth++) {
+			SimulationResults next = Search(simulated, depth, out.marked);
+			if(aborted) {
+				break;
+			}
+			out = next;
+			reached = depth;
+		}
+		deadline = 0;
+		aborted = false;
+		if(PGMS.isSingleRun) {
+			System.out.printf("Searched to depth %d in %.1f ms%n",
+				reached, (System.nanoTime() - start) / 1e6);
+		}
+		return out;
+	}
+
+	private SimulationResults Search(Map m, int depth, ArrayList<Tile> pv) {
+		if(PGMS.searchThreads > 1) {
+			return SimulateParallel(m, fringeSum, depth, pv);
+		}
+		return Simulate(m, fringeSum, new SimulationResults(), depth, 0, pv);
 	}
 
 	/**
 	 * Invoke the Precognition Vote Strategy.
+	 * The search depth, the number of threads searching each move and the
+	 * time allowed for each move are taken from PGMS.searchDepth,
+	 * PGMS.searchThreads and PGMS.moveBudget.
 	 * @see Strategy
 	 */
 	public void play(Map m) {
 		initialize(m);
 		ChooseRandom(m);
 		while(!m.done()) {
+			ReadFringe(m);
 			if(voteFringe.size() > 1) {
-				SimulationResults out = Simulate(m, new SimulationResults(), 6, 0);
+				Map simulated = m.Clone();
+				fringeSum.start(simulated);
+				SimulationResults out = Search(simulated);
 				Tile chosen = out.best;
 				Reveal(chosen.x, chosen.y,m);
 			} else {
@@ -206,7 +420,7 @@ public final class SimStrategy2 implements Strategy {
 	class Tile {
 		int x;
 		int y;
-		int value;
+		int joined;	// When the tile joined the vote fringe, or 0
 		private int votes;
 		private double score;
 		Tile(int xPos, int yPos) {
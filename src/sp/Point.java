@@ -86,6 +86,14 @@ public final class Point implements Element {
 	    && xval < ((Point)e).xval;
   }
 
+  /**
+   * A hash of this point.
+   * @see Element#hash
+   */
+  public int hash() {
+    return 31 * yval + xval;
+  }
+
   /**
    * Display the point on the standard output stream.
    * Used only for debugging.
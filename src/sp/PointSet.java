@@ -0,0 +1,391 @@
+package sp;
+
+/* This file is part of Programmer's Minesweeper (PGMS).
+
+PGMS is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+PGMS is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with PGMS; see the file COPYING.  If not, write to
+the Free Software Foundation, 59 Temple Place - Suite 330,
+Boston, MA 02111-1307, USA.
+*/
+
+import set.*;
+
+/**
+ * The class PointSet implements immutable sets of points on one
+ * board.  It provides the operations of set.Set, specialised to points.
+ * <p>
+ * Point (x, y) is numbered <code>y * columns + x</code>, so points are
+ * ordered as by Point.less, and the set is a bit set over those
+ * numbers.  Only the words from the first to the last word holding a
+ * point are stored, so the set of points around a cell takes two or
+ * three words whatever the size of the board.  Union, intersection,
+ * difference and subset work a word at a time.  The cardinality and
+ * the hash of a set are computed when first asked for, and then kept.
+ * <p>
+ * Sets combined by these operations must be made for boards with the
+ * same number of columns.
+ * @see Point
+ * @see set.Set
+ */
+public final class PointSet implements Element {
+  private static final long none[] = new long[0];
+
+  private final int columns;
+  private final int base;	// Index of the first stored word
+  private final long bits[];	// Words base .. base + bits.length - 1.
+				// The first and last words are nonzero.
+  private int card = -1;	// Cardinality, or -1 if not yet known
+  private int h;		// Hash, or 0 if not yet known
+
+  /**
+   * Construct an empty set of points.
+   * @param columns	the number of columns in the board
+   */
+  public PointSet(int columns) {
+    this(columns, 0, none);
+  }
+
+  private PointSet(int columns, int base, long bits[]) {
+    this.columns = columns;
+    this.base = base;
+    this.bits = bits;
+  }
+
+  /* Make a set from words, dropping zero words at either end. */
+  private PointSet make(int base, long bits[]) {
+    int lo = 0;
+    int hi = bits.length;
+    while (lo < hi && bits[lo] == 0)
+      lo++;
+    while (hi > lo && bits[hi - 1] == 0)
+      hi--;
+    if (lo == hi)
+      return new PointSet(columns);
+    else if (lo == 0 && hi == bits.length)
+      return new PointSet(columns, base, bits);
+    long w[] = new long[hi - lo];
+    System.arraycopy(bits, lo, w, 0, hi - lo);
+    return new PointSet(columns, base + lo, w);
+  }
+
+  /* The word with index i, which may lie outside the stored words. */
+  private long word(int i) {
+    i -= base;
+    return i >= 0 && i < bits.length ? bits[i] : 0;
+  }
+
+  /**
+   * The number of columns in the board.
+   */
+  public int columns() {
+    return columns;
+  }
+
+  /**
+   * Is this the empty set?
+   * @return 		true if this is the empty set
+   */
+  public boolean empty() {
+    return bits.length == 0;
+  }
+
+  /**
+   * Adjoin a point to a set.
+   * @param p		the point to add
+   * @return 		the new set
+   */
+  public PointSet adjoin(Point p) {
+    return adjoin(p.x(), p.y());
+  }
+
+  /**
+   * Adjoin the point (x, y) to a set.
+   * @return 		the new set
+   */
+  public PointSet adjoin(int x, int y) {
+    int k = y * columns + x;
+    int i = k >>> 6;
+    long b = 1L << k;
+    if ((word(i) & b) != 0)
+      return this;
+    if (empty())
+      return new PointSet(columns, i, new long[] { b });
+    int lo = Math.min(base, i);
+    int hi = Math.max(base + bits.length, i + 1);
+    long w[] = new long[hi - lo];
+    System.arraycopy(bits, 0, w, base - lo, bits.length);
+    w[i - lo] |= b;
+    return new PointSet(columns, lo, w);
+  }
+
+  /**
+   * Remove a point from a set.
+   * @param p		the point to remove
+   * @return 		the new set
+   */
+  public PointSet remove(Point p) {
+    int k = p.y() * columns + p.x();
+    int i = k >>> 6;
+    long b = 1L << k;
+    if ((word(i) & b) == 0)
+      return this;
+    long w[] = bits.clone();
+    w[i - base] &= ~b;
+    return make(base, w);
+  }
+
+  /**
+   * Is a point a member of this set?
+   * @param p		the point
+   * @return 		true if the point is in the set
+   */
+  public boolean member(Point p) {
+    return member(p.x(), p.y());
+  }
+
+  /**
+   * Is the point (x, y) a member of this set?
+   */
+  public boolean member(int x, int y) {
+    int k = y * columns + x;
+    return (word(k >>> 6) & (1L << k)) != 0;
+  }
+
+  /**
+   * Is this set a subset of another set?
+   * @param s		the other set
+   * @return 		true if every point in this set is in the other
+   */
+  public boolean subset(PointSet s) {
+    for (int i = 0; i < bits.length; i++)
+      if ((bits[i] & ~s.word(base + i)) != 0)
+	return false;
+    return true;
+  }
+
+  /**
+   * Is this set a proper subset of another set?
+   * @param s		the other set
+   * @return 		true if this set is a proper subset of the other
+   */
+  public boolean proper_subset(PointSet s) {
+    return subset(s) && card() < s.card();
+  }
+
+  /**
+   * Set union.
+   * @param s		the other set
+   * @return 		the union of this set and the other
+   */
+  public PointSet union(PointSet s) {
+    if (s.empty())
+      return this;
+    else if (empty())
+      return s;
+    int lo = Math.min(base, s.base);
+    int hi = Math.max(base + bits.length, s.base + s.bits.length);
+    long w[] = new long[hi - lo];
+    System.arraycopy(bits, 0, w, base - lo, bits.length);
+    for (int i = 0; i < s.bits.length; i++)
+      w[s.base - lo + i] |= s.bits[i];
+    return new PointSet(columns, lo, w);
+  }
+
+  /**
+   * Set intersection.
+   * @param s		the other set
+   * @return 		the intersection of this set and the other
+   */
+  public PointSet intersect(PointSet s) {
+    int lo = Math.max(base, s.base);
+    int hi = Math.min(base + bits.length, s.base + s.bits.length);
+    if (lo >= hi)
+      return new PointSet(columns);
+    long w[] = new long[hi - lo];
+    for (int i = lo; i < hi; i++)
+      w[i - lo] = bits[i - base] & s.bits[i - s.base];
+    return make(lo, w);
+  }
+
+  /**
+   * Set difference.
+   * @param s		the other set
+   * @return 		the set difference of this set and the other
+   */
+  public PointSet set_difference(PointSet s) {
+    long w[] = null;
+    for (int i = 0; i < bits.length; i++) {
+      long b = bits[i] & ~s.word(base + i);
+      if (b != bits[i]) {
+	if (w == null)
+	  w = bits.clone();
+	w[i] = b;
+      }
+    }
+    return w == null ? this : make(base, w);
+  }
+
+  /**
+   * The number of the first point in this set whose number is at
+   * least k, or -1 if there is none.  Point (x, y) is numbered
+   * <code>y * columns() + x</code>.  The points of a set s are visited
+   * in order by
+   * <pre>
+   * for (int k = s.next(0); k >= 0; k = s.next(k + 1))
+   * </pre>
+   * @param k		a nonnegative point number
+   */
+  public int next(int k) {
+    int i = Math.max(k >>> 6, base) - base;
+    if (i >= bits.length)
+      return -1;
+    long w = bits[i];
+    if (i + base == k >>> 6)
+      w &= -1L << k;
+    for (;;) {
+      if (w != 0)
+	return ((base + i) << 6) + Long.numberOfTrailingZeros(w);
+      if (++i >= bits.length)
+	return -1;
+      w = bits[i];
+    }
+  }
+
+  /**
+   * The point with number k.
+   */
+  public Point point(int k) {
+    return new Point(k % columns, k / columns);
+  }
+
+  /**
+   * Pick a point from the set.
+   * @return 		the least point, or null if the set is empty
+   */
+  public Point first() {
+    if (empty())
+      return null;
+    else
+      return point(next(0));
+  }
+
+  /**
+   * The set minus its first point.
+   * @return 		the set with the first point removed
+   */
+  public PointSet but_first() {
+    if (empty())
+      return null;
+    long w[] = bits.clone();
+    w[0] &= w[0] - 1;		// Clear the lowest bit
+    return make(base, w);
+  }
+
+  /**
+   * Set Cardinality.
+   * @return 		the number of points that are in the set
+   */
+  public int card() {
+    int c = card;
+    if (c < 0) {
+      c = 0;
+      for (int i = 0; i < bits.length; i++)
+	c += Long.bitCount(bits[i]);
+      card = c;
+    }
+    return c;
+  }
+
+  /**
+   * A hash of this set, which depends only on its points.
+   * @see Element#hash
+   */
+  public int hash() {
+    int z = h;
+    if (z == 0) {
+      long w = base;
+      for (int i = 0; i < bits.length; i++)
+	w = 31 * w + bits[i];
+      z = (int)(w ^ (w >>> 32));
+      h = z = z == 0 ? 1 : z;	// Zero means not yet known
+    }
+    return z;
+  }
+
+  /**
+   * Is this element equal to some other element?
+   * @see Element#same
+   */
+  public boolean same(Element e) {
+    if (e == null || !(e instanceof PointSet))
+      return false;
+    PointSet s = (PointSet)e;
+    if (base != s.base || bits.length != s.bits.length
+	|| h != 0 && s.h != 0 && h != s.h)
+      return false;
+    for (int i = 0; i < bits.length; i++)
+      if (bits[i] != s.bits[i])
+	return false;
+    return true;
+  }
+
+  /**
+   * Is this element less than some other element?
+   * As for set.Set, the order is lexicographic on the sorted points.
+   * @see Element#less
+   */
+  public boolean less(Element e) {
+    if (e == null || !(e instanceof PointSet))
+      return false;
+    PointSet s = (PointSet)e;
+    int lo = Math.min(base, s.base);
+    int hi = Math.max(base + bits.length, s.base + s.bits.length);
+    for (int i = lo; i < hi; i++) {
+      long a = word(i);
+      long b = s.word(i);
+      if (a != b) {
+	/* d is the least point in one set but not the other.  The sets
+	 * agree on all points before d.  If d is in this set, this set
+	 * is less unless the other set has no points after d.  If d is
+	 * in the other set, the roles are reversed. */
+	long d = Long.lowestOneBit(a ^ b);
+	if ((a & d) != 0)
+	  return s.after(i, d);
+	else
+	  return !after(i, d);
+      }
+    }
+    return false;
+  }
+
+  /* Does this set have a point after bit d of word i? */
+  private boolean after(int i, long d) {
+    if ((word(i) & -(d << 1)) != 0)
+      return true;
+    return base + bits.length - 1 > i;
+  }
+
+  /**
+   * Display the set on the standard output stream.
+   * Used only for debugging.
+   */
+  public void display() {
+    System.out.print("{");
+    for (int k = next(0); k >= 0; k = next(k + 1)) {
+      point(k).display();
+      if (next(k + 1) >= 0)
+	System.out.print(", ");
+    }
+    System.out.print("}");
+  }
+}
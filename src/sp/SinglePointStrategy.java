@@ -46,7 +46,7 @@ import java.util.List;
  * is unknown contain mines.
  * <p> The implementation makes extensive use of sets.
  * @see Strategy
- * @see set.Set
+ * @see PointSet
  * @version October 1995
  * @author John D. Ramsdell
  */
@@ -77,18 +77,18 @@ public final class SinglePointStrategy implements Strategy {
    * This routine applies the Single Point Strategy.
    */
     private void apply(Map m, int x, int y) {
-        Set s = new Set().adjoin(new Point(x, y));
+        PointSet s = new PointSet(m.columns()).adjoin(x, y);
 				// Set s is a set of probed points
         while (!s.empty()) {
-            Point p = (Point)s.first();
+            Point p = s.first();
             s = s.but_first();
             int i = p.x();
             int j = p.y();
             int q = m.look(i, j);
             if (q >= 0) {		// Then point p is probed and not a mine
-	            int u = unknowns_near(m, i, j);
+	            int u = m.unprobedNeighbours(i, j);
 	            if (u > 0) {		// Then some near points are unknown
-	                int k = q - marks_near(m, i, j);
+	                int k = q - m.markedNeighbours(i, j);
 	                if (k == 0)		// Then all near unknowns do not contain mines
 	                    s = probe_around(m, i, j, s);
 	                else if (k == u)	// Then all near unknowns contain mines
@@ -98,34 +98,15 @@ public final class SinglePointStrategy implements Strategy {
         }
     }
 
-    private int unknowns_near(Map m, int x, int y) {
-        int u = 0;
-        for (int j = y - 1; j < y + 2; j++)
-            for (int i = x - 1; i < x + 2; i++)
-	            if (Map.UNPROBED == m.look(i, j))
-	                u++;
-        return u;
-    }
-
-    private int marks_near(Map m, int x, int y) {
-        int u = 0;
-        for (int j = y - 1; j < y + 2; j++)
-            for (int i = x - 1; i < x + 2; i++)
-	            if (Map.MARKED == m.look(i, j))
-	                u++;
-        return u;
-    }
-
   /*
    * After probing, adjoin all unprobed points near the newly
    * probed point for future consideration by the strategy.
    */
-    private Set probe_around(Map m, int x, int y, Set s) {
-        for (int j = y - 1; j < y + 2; j++)
-            for (int i = x - 1; i < x + 2; i++)
-	            if (Map.UNPROBED == m.look(i, j)){
-                    m.probe(i, j);
-                }
+    private PointSet probe_around(Map m, int x, int y, PointSet s) {
+        for (int b = m.neighbourMask(x, y, Map.UNPROBED); b != 0; b &= b - 1) {
+            int n = Integer.numberOfTrailingZeros(b);
+            m.probe(x + Neighbours.dx(n), y + Neighbours.dy(n));
+        }
 
         return adjoin_around(m, x, y, s);
     }
@@ -134,21 +115,20 @@ public final class SinglePointStrategy implements Strategy {
    * After marking, adjoin all unprobed points near the mark
    * for future consideration by the strategy.
    */
-    private Set mark_around(Map m, int x, int y, Set s) {
-        for (int j = y - 1; j < y + 2; j++)
-            for (int i = x - 1; i < x + 2; i++)
-	            if (Map.UNPROBED == m.look(i, j)){
-                    m.mark(i, j);
-                }
+    private PointSet mark_around(Map m, int x, int y, PointSet s) {
+        for (int b = m.neighbourMask(x, y, Map.UNPROBED); b != 0; b &= b - 1) {
+            int n = Integer.numberOfTrailingZeros(b);
+            m.mark(x + Neighbours.dx(n), y + Neighbours.dy(n));
+        }
 
         return adjoin_around(m, x, y, s);
     }
 
-    private Set adjoin_around(Map m, int x, int y, Set s) {
+    private PointSet adjoin_around(Map m, int x, int y, PointSet s) {
         for (int j = y - 2; j < y + 3; j++)
             for (int i = x - 2; i < x + 3; i++)
 	            if (m.look(i, j) >= 0)
-	                s = s.adjoin(new Point(i, j));
+	                s = s.adjoin(i, j);
         return s;
     }
 }
@@ -1,6 +1,7 @@
 package state;
 
 import map.Map;
+import map.Zobrist;
 
 /**
  * Created by chewb on 3/22/2017.
@@ -11,21 +12,45 @@ public class GameState {
     public int[][] state;
     public int count = 1;
 
+    // Zobrist hash of state, kept up to date by set
+    private long hash = 0;
+
     public GameState(Map m){
         rows = m.rows();
         columns = m.columns();
         state = new int[rows][columns];
 
-        for(int x = 0; x < rows; x++){
-            for(int y = 0; y < columns; y++){
-                state[y][x] = m.look(y, x);
+        for(int y = 0; y < rows; y++){
+            for(int x = 0; x < columns; x++){
+                state[y][x] = m.look(x, y);
+                hash ^= Zobrist.key(y * columns + x, state[y][x]);
             }
         }
     }
 
+    /**
+     * Change the value of cell (x, y), updating the hash in constant time.
+     */
+    public void set(int x, int y, int value){
+        int k = y * columns + x;
+        hash ^= Zobrist.key(k, state[y][x]) ^ Zobrist.key(k, value);
+        state[y][x] = value;
+    }
+
+    /**
+     * The Zobrist hash of this state, the same as Map.zobrist of a map
+     * that looks the same.
+     */
+    public long zobrist(){
+        return hash;
+    }
+
     public boolean equals(GameState gameState){
-        for(int x = 0; x < rows; x++){
-            for(int y = 0; y < columns; y++){
+        if(hash != gameState.hash || rows != gameState.rows || columns != gameState.columns){
+            return false;
+        }
+        for(int y = 0; y < rows; y++){
+            for(int x = 0; x < columns; x++){
                 if(state[y][x] != gameState.state[y][x]){
                     return false;
                 }
@@ -34,10 +59,20 @@ public class GameState {
         return true;
     }
 
+    @Override
+    public boolean equals(Object obj){
+        return obj instanceof GameState && equals((GameState) obj);
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(hash);
+    }
+
     public void print(){
-        for(int x = 0; x < rows; x++){
-            for(int y = 0; y < columns; y++){
-                System.out.print(state[y][rows - x - 1] + " ");
+        for(int y = rows - 1; y >= 0; y--){
+            for(int x = 0; x < columns; x++){
+                System.out.print(state[y][x] + " ");
             }
             System.out.println();
         }
@@ -1,6 +1,7 @@
 package state;
 
 import map.Map;
+import map.Zobrist;
 
 /**
  * Created by chewb on 3/22/2017.
@@ -17,6 +18,9 @@ public class LocalState {
     public int bombed = 0;
     public int empty = 0;
 
+    // Zobrist hash of state, leaving out the centre as equals does
+    private long hash = 0;
+
     public LocalState(Map m, int x, int y, int size){
         this.x = x;
         this.y = y;
@@ -32,6 +36,7 @@ public class LocalState {
                     this.state[j2][i2] = 0;
                 } else {
                     this.state[j2][i2] = m.look(i, j);
+                    hash ^= Zobrist.key(j2 * size + i2, this.state[j2][i2]);
                 }
                 i2++;
             }
@@ -41,6 +46,9 @@ public class LocalState {
     }
 
     public boolean equals(LocalState localState){
+        if(hash != localState.hash || size != localState.size){
+            return false;
+        }
         int center = (size - 1) / 2;
         for(int j = 0; j < size; j++){
             for(int i = 0; i < size; i++){
@@ -56,6 +64,24 @@ public class LocalState {
         return true;
     }
 
+    @Override
+    public boolean equals(Object obj){
+        return obj instanceof LocalState && equals((LocalState) obj);
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * The Zobrist hash of this state, with cell (i, j) of the state
+     * numbered j * size + i.
+     */
+    public long zobrist(){
+        return hash;
+    }
+
     public double getBombProbability(){
         return ((double) bombed) / ((double) count);
     }
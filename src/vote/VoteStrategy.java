@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import map.Strategy;
 import map.Map;
+import map.Neighbours;
 
 public final class VoteStrategy implements Strategy {
 
@@ -18,16 +19,21 @@ public final class VoteStrategy implements Strategy {
 
 	private ArrayList<Tile> fringe;
 	private ArrayList<Tile> voteFringe;
+	private ArrayList<Tile> strays;		// Joined the vote fringe next to a marked tile
 	private Tile[][] board;
 	private int revealed = 0;
 	private int total = 0;
+	private int joins = 0;			// Tiles that have joined the vote fringe
 
 	void initialize(Map m) {
 		width = m.columns();
 		height = m.rows();
 		total = width * height;
+		revealed = 0;
+		joins = 0;
 		fringe = new ArrayList<Tile>();
 		voteFringe = new ArrayList<Tile>();
+		strays = new ArrayList<Tile>();
 		board = new Tile[width][height];
 		for (int i = 0; i < width; i++) {
 			for(int j = 0; j < height; j++) {
@@ -48,39 +54,57 @@ public final class VoteStrategy implements Strategy {
 		Reveal(x,y,m);
 	}
 
-	void RevealSurrounding(int x,int y, Map m) {
-		int q;
-		for(int i = x - 1; i <= x + 1 ; i++) {
-			for(int j = y - 1; j <= y + 1 ; j++) {
-				if(i == x && j == y) {
-					continue;
-				}
-				q = m.look(i,j);
-				if(q == Map.UNPROBED) {
-					Reveal(i,j,m);
+	/*
+	 * The map opens the region around a 0 itself, and every tile it reveals
+	 * joins the fringe.  Probing a tile again reveals nothing, but it still
+	 * joins the fringe.  The unprobed neighbours of a number join the vote
+	 * fringe, and so do those of a marked tile that ChooseRandom probes.
+	 */
+	void Reveal(int x, int y, Map m) {
+		int[] opened = m.openDepthFirst(x,y);
+		if(opened.length == 0) {
+			opened = new int[] {y * width + x};
+		}
+		for(int k: opened) {
+			Tile t = board[k % width][k / width];
+			revealed++;
+			fringe.add(t);
+			int q = m.look(t.x,t.y);
+			if(q > 0 || q == Map.MARKED) {
+				for(int i = t.x - 1; i <= t.x + 1; i++) {
+					for(int j = t.y - 1; j <= t.y+1; j++) {
+						if(m.look(i,j) == Map.UNPROBED && board[i][j].joined == 0) {
+							board[i][j].joined = ++joins;
+							if(q == Map.MARKED) {
+								strays.add(board[i][j]);
+							}
+						}
+					}
 				}
 			}
 		}
 	}
 
-	void Reveal(int x, int y, Map m) {
-		revealed++;
-		voteFringe.remove(board[x][y]);
-		fringe.add(board[x][y]);
-		int q = m.probe(x,y);
-		if(q == Map.BOOM)
-			return;
-		if(q == 0) {
-			RevealSurrounding(x,y,m);
-		} else {
-			for(int i = x - 1; i <= x + 1; i++) {
-				for(int j = y - 1; j <= y+1; j++) {
-					if(m.look(i,j) == Map.UNPROBED && !voteFringe.contains(board[i][j])) {
-						voteFringe.add(board[i][j]);
-					}
-				}
+	/*
+	 * The map keeps the vote fringe as its frontier, less any strays next to
+	 * no number, so read it once a move.  Ties are broken by the order tiles
+	 * joined the fringe, so keep it.
+	 */
+	void ReadFringe(Map m) {
+		voteFringe.clear();
+		for(int k = m.nextFrontier(0); k >= 0; k = m.nextFrontier(k + 1)) {
+			voteFringe.add(board[k % width][k / width]);
+		}
+		Iterator<Tile> iStrays = strays.iterator();
+		while (iStrays.hasNext()) {
+			Tile t = iStrays.next();
+			if(m.look(t.x,t.y) != Map.UNPROBED) {
+				iStrays.remove();
+			} else if(!m.isFrontier(t.x,t.y)) {
+				voteFringe.add(t);
 			}
 		}
+		voteFringe.sort((a, b) -> a.joined - b.joined);
 	}
 
 	void VotePhase(Map m) {
@@ -88,35 +112,26 @@ public final class VoteStrategy implements Strategy {
 			t.Reset();//Reset for votes
 		}
 		Iterator<Tile> iFringe = fringe.iterator();
-		int unprobed = 0;
 		while (iFringe.hasNext()) {
 			Tile t = iFringe.next();
-			unprobed = 0;
-			int value = m.look(t.x,t.y);
-			for(int i = t.x - 1;i <= t.x + 1; i++) {
-				for(int j = t.y - 1;j <= t.y + 1; j++) {
-					if(m.look(i,j) == Map.UNPROBED){
-						unprobed++;//counting unprobed neighbors
-					} else if(m.look(i,j) == Map.MARKED) {
-						value--;
-					}
-				}
+			int unprobed = m.unprobedNeighbours(t.x,t.y);//counting unprobed neighbors
+			int value = m.look(t.x,t.y) - m.markedNeighbours(t.x,t.y);
+			if(m.look(t.x,t.y) == Map.MARKED) {
+				value--;//ChooseRandom can reveal a marked tile, which counts itself
 			}
 			if(value == 0) { //remove from fringe, it's done
 				iFringe.remove();
 				continue;
 			}
 			double score = 1.0 - (value / (double)unprobed);
-			for(int x = t.x - 1;x <= t.x + 1; x++) {
-				for(int y = t.y - 1;y <= t.y + 1; y++) {
-					if(m.look(x,y) == Map.UNPROBED){
-						if(score <= 5e-5) {//around me is bombs
-							m.mark(x,y);
-							voteFringe.remove(board[x][y]);//Clean up the vote fringe since i marked it as a bomb
-						} else {
-							board[x][y].Vote(score);
-						}
-					}
+			for(int b = m.neighbourMask(t.x,t.y,Map.UNPROBED); b != 0; b &= b - 1) {
+				int x = t.x + Neighbours.dx(Integer.numberOfTrailingZeros(b));
+				int y = t.y + Neighbours.dy(Integer.numberOfTrailingZeros(b));
+				if(score <= 5e-5) {//around me is bombs
+					m.mark(x,y);
+					voteFringe.remove(board[x][y]);//Clean up the vote fringe since i marked it as a bomb
+				} else {
+					board[x][y].Vote(score);
 				}
 			}
 		}
@@ -143,6 +158,7 @@ public final class VoteStrategy implements Strategy {
 		initialize(m);
 		ChooseRandom(m);
 		while(!m.done()) {
+			ReadFringe(m);
 			VotePhase(m);
 			Tile guess = ChooseBest();
 			if(guess == null || guess.getScore() < (double)(total - revealed) / m.mines_minus_marks()) {
@@ -170,6 +186,7 @@ public final class VoteStrategy implements Strategy {
 	class Tile {
 		int x;
 		int y;
+		int joined;	// When the tile joined the vote fringe, or 0
 		private int votes;
 		private double score;
 		Tile(int xPos, int yPos) {